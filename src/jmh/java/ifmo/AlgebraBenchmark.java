@@ -0,0 +1,52 @@
+package ifmo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Iterator;
+import java.util.stream.IntStream;
+
+/*
+Intersection of two sets of `size` keys by lookups of one set in the other and by a merge of their snapshots
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AlgebraBenchmark {
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private ConcurrentSet<Integer> first;
+    private ConcurrentSet<Integer> second;
+
+    @Setup
+    public void setUp() {
+        first = ConcurrentSet.ofSorted(IntStream.range(0, size).map(i -> i * 2).boxed());
+        second = ConcurrentSet.ofSorted(IntStream.range(0, size).map(i -> i * 3).boxed());
+    }
+
+    @Benchmark
+    public ConcurrentSet<Integer> lookups() {
+        final ConcurrentSet<Integer> result = new ConcurrentSet<>();
+        final Iterator<Integer> iterator = first.iterator();
+        while (iterator.hasNext()) {
+            final Integer value = iterator.next();
+            if (second.contains(value)) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public ConcurrentSet<Integer> merge() {
+        return ConcurrentSet.ofSorted(SetAlgebra.intersection(first, second));
+    }
+}
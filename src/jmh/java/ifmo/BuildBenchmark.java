@@ -0,0 +1,37 @@
+package ifmo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.stream.IntStream;
+
+/*
+Time to build a set of `size` ascending keys by single additions and by `ofSorted`
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BuildBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Benchmark
+    public ConcurrentSet<Integer> add() {
+        final ConcurrentSet<Integer> set = new ConcurrentSet<>();
+        for (int key = 0; key < size; key++) {
+            set.add(key);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public ConcurrentSet<Integer> ofSorted() {
+        return ConcurrentSet.ofSorted(IntStream.range(0, size).boxed());
+    }
+}
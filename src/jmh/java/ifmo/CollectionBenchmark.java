@@ -0,0 +1,77 @@
+package ifmo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+
+/*
+Throughput of the collection used by the snapshot collector.
+Thread count is set by jmh `-t` option
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CollectionBenchmark {
+
+    @Benchmark
+    public boolean add(SharedCollection state) {
+        return state.collection.add(state);
+    }
+
+    @Benchmark
+    public List<Integer> content(BlockedCollection state) {
+        return state.collection.content();
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedCollection {
+        @Param({"ConcurrentCollection", "SegmentedCollection"})
+        public String implementation;
+
+        Collection<Object> collection;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            collection = newCollection(implementation);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BlockedCollection {
+        @Param({"ConcurrentCollection", "SegmentedCollection"})
+        public String implementation;
+
+        @Param({"1000", "100000"})
+        public int size;
+
+        Collection<Integer> collection;
+
+        @Setup
+        public void setUp() {
+            collection = newCollection(implementation);
+            for (int i = 0; i < size; i++) {
+                collection.add(i);
+            }
+            collection.blockFurtherAdd();
+        }
+    }
+
+    private static <T> Collection<T> newCollection(String implementation) {
+        switch (implementation) {
+            case "ConcurrentCollection":
+                return new ConcurrentCollection<>();
+            case "SegmentedCollection":
+                return new SegmentedCollection<>();
+            default:
+                throw new IllegalArgumentException(implementation);
+        }
+    }
+}
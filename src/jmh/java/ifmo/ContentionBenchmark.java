@@ -0,0 +1,100 @@
+package ifmo;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+Updates of a few hot keys with and without backoff after failed CASes, and through flat combining.
+Thread count is set by jmh `-t` option, the difference shows at high thread counts.
+The `retries` counter is the number of failed CASes that made an operation retry
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ContentionBenchmark {
+    private static final ThreadLocal<Retries> RETRIES = new ThreadLocal<>();
+
+    @Param({"NONE", "EXPONENTIAL"})
+    public String contention;
+
+    @Param({"16", "1000"})
+    public int keyRange;
+
+    private ConcurrentSet<Integer> set;
+    private Collection<Object> collection;
+    private Set<Integer> combining;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        final ContentionPolicy policy = counting(policy(contention));
+        set = new ConcurrentSet<Integer>(policy);
+        collection = new ConcurrentCollection<>(policy);
+        combining = new CombiningConcurrentSet<>(new ConcurrentSet<Integer>(policy));
+    }
+
+    @Benchmark
+    public boolean update(Retries retries) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final Integer key = random.nextInt(keyRange);
+        return random.nextBoolean() ? set.add(key) : set.remove(key);
+    }
+
+    @Benchmark
+    public boolean combiningUpdate(Retries retries) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final Integer key = random.nextInt(keyRange);
+        return random.nextBoolean() ? combining.add(key) : combining.remove(key);
+    }
+
+    @Benchmark
+    public boolean collectionAdd(Retries retries) {
+        return collection.add(this);
+    }
+
+    /*
+    Counts the calls of `policy` in the `Retries` of the calling thread
+     */
+    private static ContentionPolicy counting(ContentionPolicy policy) {
+        return attempt -> {
+            RETRIES.get().retries++;
+            policy.backoff(attempt);
+        };
+    }
+
+    private static ContentionPolicy policy(String contention) {
+        switch (contention) {
+            case "NONE":
+                return ContentionPolicy.NONE;
+            case "EXPONENTIAL":
+                return ContentionPolicy.exponential();
+            default:
+                throw new IllegalArgumentException(contention);
+        }
+    }
+
+    /*
+    Failed CASes of one thread, summed over the threads by jmh
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retries {
+        public long retries;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            retries = 0;
+            RETRIES.set(this);
+        }
+    }
+}
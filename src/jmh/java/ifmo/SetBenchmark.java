@@ -0,0 +1,230 @@
+package ifmo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+Throughput of the set operations compared with the sets of the standard library.
+Thread count is set by jmh `-t` option
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SetBenchmark {
+    @Param({"ConcurrentSet", "StripedConcurrentSet", "VersionedConcurrentSet", "UnrolledConcurrentSet", "CombiningConcurrentSet", "OffHeapLongSet", "ConcurrentSkipListSet", "SynchronizedTreeSet"})
+    public String implementation;
+
+    @Param({"1000", "100000"})
+    public int keyRange;
+
+    @Param({"90", "50", "0"})
+    public int readPercent;
+
+    private BenchmarkedSet set;
+
+    @Setup
+    public void setUp() {
+        set = BenchmarkedSet.create(implementation);
+        for (int key = 0; key < keyRange; key += 2) {
+            set.add(key);
+        }
+    }
+
+    @Benchmark
+    public boolean mixed() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final Integer key = random.nextInt(keyRange);
+        final int operation = random.nextInt(100);
+        if (operation < readPercent) {
+            return set.contains(key);
+        } else if ((operation & 1) == 0) {
+            return set.add(key);
+        } else {
+            return set.remove(key);
+        }
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        set.forEach(blackhole);
+    }
+
+    /*
+    Writers running while another thread keeps taking snapshots
+     */
+    @Benchmark
+    @Group("writeWhileIterating")
+    @GroupThreads(3)
+    public boolean writer() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final Integer key = random.nextInt(keyRange);
+        return random.nextBoolean() ? set.add(key) : set.remove(key);
+    }
+
+    @Benchmark
+    @Group("writeWhileIterating")
+    @GroupThreads(1)
+    public void iterator(Blackhole blackhole) {
+        set.forEach(blackhole);
+    }
+
+    /*
+    Common view of the benchmarked sets
+     */
+    private interface BenchmarkedSet {
+        boolean add(Integer value);
+
+        boolean remove(Integer value);
+
+        boolean contains(Integer value);
+
+        void forEach(Blackhole blackhole);
+
+        static BenchmarkedSet create(String implementation) {
+            switch (implementation) {
+                case "ConcurrentSet":
+                    return of(new ConcurrentSet<>());
+                case "StripedConcurrentSet":
+                    return of(new StripedConcurrentSet<>());
+                case "VersionedConcurrentSet":
+                    return of(new VersionedConcurrentSet<>());
+                case "UnrolledConcurrentSet":
+                    return of(new UnrolledConcurrentSet<>());
+                case "CombiningConcurrentSet":
+                    return of(new CombiningConcurrentSet<>());
+                case "OffHeapLongSet":
+                    return of(new OffHeapLongSet());
+                case "ConcurrentSkipListSet":
+                    return of(new ConcurrentSkipListSet<>());
+                case "SynchronizedTreeSet":
+                    return ofSynchronized(Collections.synchronizedSortedSet(new TreeSet<>()));
+                default:
+                    throw new IllegalArgumentException(implementation);
+            }
+        }
+
+        static BenchmarkedSet of(Set<Integer> set) {
+            return new BenchmarkedSet() {
+                @Override
+                public boolean add(Integer value) {
+                    return set.add(value);
+                }
+
+                @Override
+                public boolean remove(Integer value) {
+                    return set.remove(value);
+                }
+
+                @Override
+                public boolean contains(Integer value) {
+                    return set.contains(value);
+                }
+
+                @Override
+                public void forEach(Blackhole blackhole) {
+                    final Iterator<Integer> iterator = set.iterator();
+                    while (iterator.hasNext()) {
+                        blackhole.consume(iterator.next());
+                    }
+                }
+            };
+        }
+
+        static BenchmarkedSet of(OffHeapLongSet set) {
+            return new BenchmarkedSet() {
+                @Override
+                public boolean add(Integer value) {
+                    return set.add(value.longValue());
+                }
+
+                @Override
+                public boolean remove(Integer value) {
+                    return set.remove(value.longValue());
+                }
+
+                @Override
+                public boolean contains(Integer value) {
+                    return set.contains(value.longValue());
+                }
+
+                @Override
+                public void forEach(Blackhole blackhole) {
+                    final PrimitiveIterator.OfLong iterator = set.iterator();
+                    while (iterator.hasNext()) {
+                        blackhole.consume(iterator.nextLong());
+                    }
+                }
+            };
+        }
+
+        static BenchmarkedSet of(java.util.Set<Integer> set) {
+            return new BenchmarkedSet() {
+                @Override
+                public boolean add(Integer value) {
+                    return set.add(value);
+                }
+
+                @Override
+                public boolean remove(Integer value) {
+                    return set.remove(value);
+                }
+
+                @Override
+                public boolean contains(Integer value) {
+                    return set.contains(value);
+                }
+
+                @Override
+                public void forEach(Blackhole blackhole) {
+                    for (Integer value : set) {
+                        blackhole.consume(value);
+                    }
+                }
+            };
+        }
+
+        static BenchmarkedSet ofSynchronized(java.util.Set<Integer> set) {
+            final BenchmarkedSet delegate = of(set);
+            return new BenchmarkedSet() {
+                @Override
+                public boolean add(Integer value) {
+                    return delegate.add(value);
+                }
+
+                @Override
+                public boolean remove(Integer value) {
+                    return delegate.remove(value);
+                }
+
+                @Override
+                public boolean contains(Integer value) {
+                    return delegate.contains(value);
+                }
+
+                @Override
+                public void forEach(Blackhole blackhole) {
+                    synchronized (set) {
+                        delegate.forEach(blackhole);
+                    }
+                }
+            };
+        }
+    }
+}
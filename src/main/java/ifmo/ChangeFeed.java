@@ -0,0 +1,149 @@
+package ifmo;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+Bounded feed of the changes of a set in a ring buffer.
+A change gets a sequence number when it is claimed and is then published into the slot of that number.
+Writers never wait for readers: a slot is overwritten one lap later, and a reader that has fallen behind
+by more than the capacity gets an overrun and has to subscribe again.
+A number claimed for a change that has been sequenced by another thread is published as a gap
+ */
+final class ChangeFeed<T> {
+    private final AtomicReferenceArray<Change<T>> slots;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /*
+    Feed that keeps the last `capacity` changes, `capacity` is rounded up to a power of two
+     */
+    ChangeFeed(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Illegal capacity " + capacity);
+        }
+        final int size = Integer.highestOneBit(capacity - 1) << 1;
+        slots = new AtomicReferenceArray<>(Math.max(1, size));
+        mask = slots.length() - 1;
+    }
+
+    /*
+    Number of the last claimed change, 0 if there were none
+     */
+    long position() {
+        return sequence.get();
+    }
+
+    long claim() {
+        return sequence.incrementAndGet();
+    }
+
+    void publish(long number, T value, Report.ReportType type) {
+        publish(new Change<>(number, value, type));
+    }
+
+    void skip(long number) {
+        publish(new Change<>(number, null, null));
+    }
+
+    /*
+    Cursor that returns the changes starting from number `position + 1`
+     */
+    Cursor<T> cursor(long position) {
+        return new Cursor<>(this, position + 1);
+    }
+
+    /*
+    A late writer does not overwrite a change of a later lap
+     */
+    private void publish(Change<T> change) {
+        final int index = (int) change.sequence & mask;
+        while (true) {
+            final Change<T> current = slots.get(index);
+            if (current != null && current.sequence > change.sequence) {
+                return;
+            }
+            if (slots.compareAndSet(index, current, change)) {
+                return;
+            }
+        }
+    }
+
+    /*
+    Insertion or deletion of a value
+     */
+    static final class Change<V> {
+        final long sequence;
+        final V value;
+        final Report.ReportType type;
+
+        Change(long sequence, V value, Report.ReportType type) {
+            this.sequence = sequence;
+            this.value = value;
+            this.type = type;
+        }
+
+        @Override
+        public String toString() {
+            return sequence + ": " + type + " " + value;
+        }
+    }
+
+    /*
+    Reader of the feed, not thread-safe
+     */
+    static final class Cursor<V> {
+        private final ChangeFeed<V> feed;
+        private long next;
+
+        Cursor(ChangeFeed<V> feed, long next) {
+            this.feed = feed;
+            this.next = next;
+        }
+
+        /*
+        Returns the next change, or null if it has not been published yet.
+        Throws `IllegalStateException` if the change has already been overwritten
+         */
+        Change<V> poll() {
+            while (true) {
+                final Change<V> change = feed.slots.get((int) next & feed.mask);
+                if (change == null || change.sequence < next) {
+                    if (feed.position() - next >= feed.slots.length()) {
+                        throw new IllegalStateException("Change feed overrun at " + next);
+                    }
+                    return null;
+                }
+                if (change.sequence > next) {
+                    throw new IllegalStateException("Change feed overrun at " + next);
+                }
+                next++;
+                if (change.type != null) {
+                    return change;
+                }
+            }
+        }
+
+        /*
+        Number of the next change to be returned
+         */
+        long position() {
+            return next;
+        }
+    }
+
+    /*
+    Snapshot of a set and a cursor over the changes after it.
+    Changes already reflected in the snapshot may be returned again, applying them once more does not change the set
+     */
+    static final class Subscription<V> {
+        final Iterator<V> snapshot;
+        final Cursor<V> changes;
+
+        Subscription(Iterator<V> snapshot, Cursor<V> changes) {
+            this.snapshot = snapshot;
+            this.changes = changes;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package ifmo;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ Flat-combining front end of `ConcurrentSet` for heavy write contention on a few keys.
+ A thread publishes its `add` or `remove` in a per-thread slot. The thread that takes the combiner lock
+ collects the pending operations, sorts them by value and applies them to the set in one pass with a shared cursor,
+ so the updates of the hot keys do not fight for the same nodes. Other threads wait for their results
+ or for the lock to be released.
+ The lock only batches the updates, it is not needed for progress: a thread that has waited for `patience` yields
+ takes its operation back from the slot and applies it to the set itself. The combiner claims each slot
+ right before applying it and skips the slots taken back, so a stalled combiner delays at most the one operation
+ it is applying.
+ Reads and iterators go to the set directly, every update is applied by a lock-free operation of the set
+ while its caller is waiting, so the set stays linearizable.
+ An exception thrown by an update, e.g. by `compareTo`, is handed to the thread that published it
+ and does not affect the other operations of the batch.
+ Slots of terminated threads are unlinked by the combiner, except the most recently registered one.
+ */
+final class CombiningConcurrentSet<T extends Comparable<T>> implements Set<T> {
+    private static final int SPINS = 64;
+    private static final int PASSES = 3;
+    private static final int PATIENCE = 16;
+
+    private final ConcurrentSet<T> set;
+    private final int patience;
+    private final AtomicBoolean combining = new AtomicBoolean();
+    private final AtomicReference<Slot<T>> slots = new AtomicReference<>();
+    private final ThreadLocal<Slot<T>> slot = ThreadLocal.withInitial(this::registerSlot);
+
+    /*
+    Operations collected by the combiner, used only under the lock
+     */
+    private final List<Slot<T>> pending = new ArrayList<>();
+
+    CombiningConcurrentSet() {
+        this(new ConcurrentSet<>());
+    }
+
+    CombiningConcurrentSet(ConcurrentSet<T> set) {
+        this(set, PATIENCE);
+    }
+
+    /*
+    `patience` is the number of yields a thread waits for the combiner before it applies its operation itself
+     */
+    CombiningConcurrentSet(ConcurrentSet<T> set, int patience) {
+        if (patience < 0) {
+            throw new IllegalArgumentException("Patience is negative");
+        }
+        this.set = set;
+        this.patience = patience;
+    }
+
+    @Override
+    public boolean add(T value) {
+        return apply(value, false);
+    }
+
+    @Override
+    public boolean remove(T value) {
+        return apply(value, true);
+    }
+
+    @Override
+    public boolean contains(T value) {
+        return set.contains(value);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return set.isEmpty();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return set.iterator();
+    }
+
+    @Override
+    public long size() {
+        return set.size();
+    }
+
+    @Override
+    public long estimatedSize() {
+        return set.estimatedSize();
+    }
+
+    private boolean apply(T value, boolean remove) {
+        final Slot<T> own = slot.get();
+        own.value = value;
+        own.remove = remove;
+        own.state = Slot.PENDING;
+        int spins = 0;
+        int yields = 0;
+        while (true) {
+            if (!combining.get() && combining.compareAndSet(false, true)) {
+                try {
+                    combine();
+                } finally {
+                    combining.set(false);
+                }
+            }
+            if (own.state == Slot.DONE) {
+                final Throwable failure = own.failure;
+                own.failure = null;
+                own.value = null;
+                own.state = Slot.EMPTY;
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                if (failure != null) {
+                    throw (RuntimeException) failure;
+                }
+                return own.result;
+            }
+            if (++spins == SPINS) {
+                spins = 0;
+                if (yields == patience && own.compareAndSetState(Slot.PENDING, Slot.EMPTY)) {
+                    own.value = null;
+                    return remove ? set.remove(value) : set.add(value);
+                }
+                yields++;
+                Thread.yield();
+            }
+        }
+    }
+
+    /*
+    Applies the pending operations, a few passes catch the operations published meanwhile.
+    A failed operation is completed with its exception. If the values cannot be sorted, they are applied
+    in the order collected: the cursor is used only when it precedes the value, so the results stay correct.
+    The same holds when a slot was taken back and published again after the sort
+     */
+    private void combine() {
+        try {
+            for (int pass = 0; pass < PASSES; pass++) {
+                collect(pass == 0);
+                if (pending.isEmpty()) {
+                    return;
+                }
+                try {
+                    pending.sort((a, b) -> a.value.compareTo(b.value));
+                } catch (RuntimeException e) {
+                    // The operation with the broken value fails below
+                }
+                final ConcurrentSet.Cursor<T> cursor = new ConcurrentSet.Cursor<>();
+                for (Slot<T> s : pending) {
+                    if (!s.compareAndSetState(Slot.PENDING, Slot.CLAIMED)) {
+                        // Taken back by its owner
+                        continue;
+                    }
+                    try {
+                        s.result = s.remove ? set.remove(s.value, cursor) : set.add(s.value, cursor);
+                    } catch (RuntimeException | Error e) {
+                        s.failure = e;
+                    }
+                    s.state = Slot.DONE;
+                }
+                pending.clear();
+            }
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /*
+    Collects the pending slots and, if `reclaim` is set, unlinks the slots of terminated threads.
+    The first slot is never unlinked, new slots are pushed before it
+     */
+    private void collect(boolean reclaim) {
+        Slot<T> prev = null;
+        for (Slot<T> s = slots.get(); s != null; s = s.next) {
+            if (s.state == Slot.PENDING) {
+                pending.add(s);
+            } else if (reclaim && prev != null && !s.owner.isAlive()) {
+                prev.next = s.next;
+                continue;
+            }
+            prev = s;
+        }
+    }
+
+    private Slot<T> registerSlot() {
+        final Slot<T> s = new Slot<>(Thread.currentThread());
+        do {
+            s.next = slots.get();
+        } while (!slots.compareAndSet(s.next, s));
+        return s;
+    }
+
+    /*
+    Operation published by a thread. Its fields are written before `state` becomes PENDING
+    and the result or the failure is written before `state` becomes DONE.
+    A PENDING slot is either claimed by the combiner or taken back by its owner, the one that changes the state
+    applies the operation.
+    `next` is changed only by the combiner, except in a slot being registered
+     */
+    private static final class Slot<V> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Slot> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Slot.class, "state");
+
+        static final int EMPTY = 0;
+        static final int PENDING = 1;
+        static final int CLAIMED = 2;
+        static final int DONE = 3;
+
+        final Thread owner;
+        volatile int state = EMPTY;
+        V value;
+        boolean remove;
+        boolean result;
+        Throwable failure;
+        Slot<V> next;
+
+        Slot(Thread owner) {
+            this.owner = owner;
+        }
+
+        boolean compareAndSetState(int expected, int state) {
+            return STATE.compareAndSet(this, expected, state);
+        }
+    }
+}
@@ -2,41 +2,60 @@ package ifmo;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicMarkableReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public class ConcurrentCollection<T> implements Collection<T> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ConcurrentCollection, Node> HEAD =
+            AtomicReferenceFieldUpdater.newUpdater(ConcurrentCollection.class, Node.class, "head");
+
     private final Node<T> tail = new Node<>(null, null);
-    private final AtomicMarkableReference<Node<T>> head = new AtomicMarkableReference<>(tail, false);
+    private final ContentionPolicy contention;
+    private volatile Node<T> head = tail;
+
+    public ConcurrentCollection() {
+        this(ContentionPolicy.NONE);
+    }
+
+    /*
+    Collection whose operations back off by `contention` after a failed CAS
+     */
+    public ConcurrentCollection(ContentionPolicy contention) {
+        this.contention = contention;
+    }
 
     @Override
     public boolean add(T value) {
+        int failures = 0;
         while (true) {
-            Node<T> curHead = head.getReference();
+            Node<T> curHead = head;
+            if (curHead instanceof Blocker) {
+                return false;
+            }
             Node<T> newHead = new Node<>(value, curHead);
 
-            if (head.compareAndSet(curHead, newHead, false, false)) {
+            if (HEAD.compareAndSet(this, curHead, newHead)) {
                 return true;
-            } else {
-                if (head.isMarked()) {
-                    return false;
-                }
             }
+            contention.backoff(++failures);
         }
     }
 
     @Override
     public void blockFurtherAdd() {
+        int failures = 0;
         while (true) {
-            Node<T> curHead = head.getReference();
-            if (head.attemptMark(curHead, true)) {
+            Node<T> curHead = head;
+            if (curHead instanceof Blocker || HEAD.compareAndSet(this, curHead, new Blocker<>(curHead))) {
                 return;
             }
+            contention.backoff(++failures);
         }
     }
 
     @Override
     public boolean isBlocked() {
-        return head.isMarked();
+        return head instanceof Blocker;
     }
 
     @Override
@@ -45,7 +64,7 @@ public class ConcurrentCollection<T> implements Collection<T> {
             throw new IllegalStateException();
         }
         final List<T> content = new ArrayList<>();
-        Node<T> curr = head.getReference();
+        Node<T> curr = head.next;
         while (curr != tail) {
             content.add(curr.value);
             curr = curr.next;
@@ -65,4 +84,13 @@ public class ConcurrentCollection<T> implements Collection<T> {
             this.next = next;
         }
     }
+
+    /*
+    Head of a blocked collection, refers to the last added node
+     */
+    private static final class Blocker<V> extends Node<V> {
+        Blocker(Node<V> next) {
+            super(null, next);
+        }
+    }
 }
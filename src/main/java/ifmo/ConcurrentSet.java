@@ -1,170 +1,635 @@
 package ifmo;
 
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.TreeSet;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicMarkableReference;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 
 /*
  Lock-free set.
  Iterator implementation based on http://www.cs.technion.ac.il/~erez/Papers/iterators-disc13.pdf.
+ Searches are accelerated by skip-list index towers built over the node chain.
  */
-final class ConcurrentSet<T extends Comparable<T>> implements Set<T> {
+final class ConcurrentSet<T extends Comparable<T>> implements NavigableSet<T> {
     private final Node<T> tail = new Node<>(null);
     private final Node<T> head = new Node<>(null, tail);
-    private final AtomicReference<SnapCollector<T>> snapCollectorHolder = new AtomicReference<>(new SnapCollector<>(false));
+    private final AtomicReference<SnapCollector<Node<T>>> snapCollectorHolder;
+    private final Index<T>[] heads = IndexLevels.heads(down -> new Index<>(head, down));
+    private final AtomicInteger indexLevel = new AtomicInteger();
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder snapshotReports = new LongAdder();
+    private final SetStats stats;
+    private final ContentionPolicy contention;
+    private final ChangeFeed<T> feed;
+    private final LongAdder count = new LongAdder();
 
-    @Override
-    public boolean add(T value) {
-        while (true) {
-            final Pair<Node<T>> place = find(value);
-            final Node<T> pred = place.first;
-            final Node<T> curr = place.second;
-            if (curr != tail && curr.getValue().compareTo(value) == 0) {
-                return false;
-            }
-            final Node<T> nodeToInsert = new Node<>(value, curr);
-            if (pred.compareAndSet(curr, nodeToInsert, false, false)) {
-                reportInsert(nodeToInsert);
-                return true;
+    ConcurrentSet() {
+        this(ContentionPolicy.NONE);
+    }
+
+    /*
+    Set whose operations back off by `contention` after a failed CAS, and so do the reports to its snapshots
+     */
+    ConcurrentSet(ContentionPolicy contention) {
+        this(new AtomicReference<>(new SnapCollector<>(false)), null, contention, null);
+    }
+
+    /*
+    Set that reports to the snapshot collectors of `snapCollectorHolder`, which may be shared with other sets.
+    Hot-path statistics are collected if `stats` is not null, changes are published if `feed` is not null
+     */
+    private ConcurrentSet(AtomicReference<SnapCollector<Node<T>>> snapCollectorHolder, SetStats stats,
+                          ContentionPolicy contention, ChangeFeed<T> feed) {
+        this.snapCollectorHolder = snapCollectorHolder;
+        this.stats = stats;
+        this.contention = contention;
+        this.feed = feed;
+    }
+
+    /*
+    Creates a set that collects statistics of its operations, see `stats`
+     */
+    static <V extends Comparable<V>> ConcurrentSet<V> instrumented() {
+        return instrumented(ContentionPolicy.NONE);
+    }
+
+    static <V extends Comparable<V>> ConcurrentSet<V> instrumented(ContentionPolicy contention) {
+        return new ConcurrentSet<>(new AtomicReference<>(new SnapCollector<>(false)), new SetStats(), contention, null);
+    }
+
+    /*
+    Creates a set that publishes its changes to a feed of the last `capacity` changes, see `subscribe`
+     */
+    static <V extends Comparable<V>> ConcurrentSet<V> withChangeFeed(int capacity) {
+        final ChangeFeed<V> feed = new ChangeFeed<>(capacity);
+        return new ConcurrentSet<>(new AtomicReference<>(new SnapCollector<>(false)), null, ContentionPolicy.NONE, feed);
+    }
+
+    /*
+    Creates a set of strictly ascending `values` in one pass: nodes and index towers are appended
+    at the end of each level instead of being searched for.
+    Throws `IllegalArgumentException` if the values are not strictly ascending
+     */
+    static <V extends Comparable<V>> ConcurrentSet<V> ofSorted(Iterator<? extends V> values) {
+        final ConcurrentSet<V> set = new ConcurrentSet<>();
+        set.appendSorted(values);
+        return set;
+    }
+
+    static <V extends Comparable<V>> ConcurrentSet<V> ofSorted(Stream<? extends V> values) {
+        return ofSorted(values.iterator());
+    }
+
+    /*
+    Takes a snapshot of the set and returns it with a cursor over the changes after it, in the order of their
+    linearization for every key. A change that is reflected in the snapshot may be returned by the cursor,
+    so a replica applies the changes to a copy of the snapshot as they come.
+    Throws `IllegalStateException` if the set was created without a change feed
+     */
+    ChangeFeed.Subscription<T> subscribe() {
+        if (feed == null) {
+            throw new IllegalStateException("The set has no change feed");
+        }
+        // Changes numbered up to the position have been reported before the snapshot is started
+        final long position = feed.position();
+        return new ChangeFeed.Subscription<>(iterator(), feed.cursor(position));
+    }
+
+    /*
+    Statistics of the set, null if it was created without instrumentation
+     */
+    SetStats stats() {
+        return stats;
+    }
+
+    /*
+    Creates sets that share snapshot collectors, so that `iteratorOver(shards)` takes a snapshot of all of them at once
+     */
+    static <V extends Comparable<V>> List<ConcurrentSet<V>> newShards(int count) {
+        final AtomicReference<SnapCollector<Node<V>>> holder = new AtomicReference<>(new SnapCollector<>(false));
+        final List<ConcurrentSet<V>> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shards.add(new ConcurrentSet<>(holder, null, ContentionPolicy.NONE, null));
+        }
+        return shards;
+    }
+
+    /*
+    Iterator over a snapshot of the union of `shards` created by `newShards`, in key order
+     */
+    static <V extends Comparable<V>> Iterator<V> iteratorOver(List<ConcurrentSet<V>> shards) {
+        final SnapCollector<Node<V>> collector = shards.get(0).acquireSnapCollector(null);
+        boolean completed = true;
+        for (ConcurrentSet<V> shard : shards) {
+            if (!shard.collectNodes(collector)) {
+                completed = false;
+                break;
             }
         }
+        final boolean deactivated = completed && blockFurtherNodes(collector);
+        collector.blockFurtherReports();
+        if (deactivated) {
+            shards.get(0).recordSnapshot(collector);
+        }
+        return values(collector.iterator(ConcurrentSet::compare));
+    }
+
+    @Override
+    public boolean add(T value) {
+        return add(value, null);
     }
 
     @Override
     public boolean remove(T value) {
-        while (true) {
-            final Pair<Node<T>> place = find(value);
-            final Node<T> pred = place.first;
-            final Node<T> curr = place.second;
-            if (curr == tail || curr.getValue().compareTo(value) != 0) {
+        return remove(value, null);
+    }
+
+    @Override
+    public boolean contains(T value) {
+        return contains(value, null);
+    }
+
+    @Override
+    public boolean addAll(Iterable<? extends T> values) {
+        final Cursor<T> cursor = new Cursor<>();
+        boolean changed = false;
+        for (T value : values) {
+            changed |= add(value, cursor);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean removeAll(Iterable<? extends T> values) {
+        final Cursor<T> cursor = new Cursor<>();
+        boolean changed = false;
+        for (T value : values) {
+            changed |= remove(value, cursor);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean containsAll(Iterable<? extends T> values) {
+        final Cursor<T> cursor = new Cursor<>();
+        for (T value : values) {
+            if (!contains(value, cursor)) {
                 return false;
             }
-            // `curr` is not tail
-            final Node<T> succ = curr.getNext();
-            if (curr.compareAndSet(succ, succ, false, true)) {
-                reportDelete(curr);
-                // Try remove physically
-                pred.compareAndSet(curr, succ, false, false);
-                return true;
-            }
         }
+        return true;
     }
 
+    /*
+    The order is checked before any key is removed, so unsorted values leave the set unchanged
+     */
     @Override
-    public boolean contains(T value) {
+    public boolean retainAll(Iterable<? extends T> values) {
+        final Iterator<? extends T> retained = sortedCopy(values).iterator();
+        T bound = retained.hasNext() ? retained.next() : null;
+        boolean changed = false;
+        Node<T> pred = head;
         Node<T> curr = head.getNext();
         while (curr != tail) {
+            final Node<T> succ = curr.getNext();
             if (curr.isDeleted()) {
-                curr = curr.getNext();
-            } else {
-                int cmpResult = curr.getValue().compareTo(value);
-                if (cmpResult == 0) {
-                    return true;
-                } else if (cmpResult > 0) {
-                    return false;
-                } else {
-                    curr = curr.getNext();
-                }
+                curr = succ;
+                continue;
+            }
+            final T value = curr.getValue();
+            while (bound != null && bound.compareTo(value) < 0) {
+                bound = retained.hasNext() ? retained.next() : null;
+            }
+            if (bound != null && bound.compareTo(value) == 0) {
+                pred = curr;
+                curr = succ;
+            } else if (curr.markDeleted(succ)) {
+                count.decrement();
+                reportDelete(curr);
+                // Try remove physically
+                pred.compareAndSetNext(curr, succ);
+                changed = true;
+                curr = succ;
             }
         }
-        return false;
+        return changed;
     }
 
     @Override
     public boolean isEmpty() {
-        return !iterator().hasNext();
+        final Node<T> first = firstNode();
+        if (first == tail) {
+            return true;
+        }
+        reportInsert(first);
+        return false;
     }
 
     @Override
     public Iterator<T> iterator() {
-        final SnapCollector<T> collector = acquireSnapCollector();
+        return iterator(null);
+    }
+
+    @Override
+    public long estimatedSize() {
+        return Math.max(0, count.sum());
+    }
+
+    @Override
+    public T first() {
+        if (stats != null) {
+            stats.operation();
+        }
+        final Node<T> first = firstNode();
+        if (first == tail) {
+            throw new NoSuchElementException();
+        }
+        reportInsert(first);
+        return first.getValue();
+    }
+
+    @Override
+    public T last() {
+        final Node<T> last = locate(null, true).first;
+        if (last == head) {
+            throw new NoSuchElementException();
+        }
+        return last.getValue();
+    }
+
+    @Override
+    public T ceiling(T value) {
+        return valueOf(locate(value, true).second);
+    }
+
+    @Override
+    public T floor(T value) {
+        return valueOf(locate(value, false).first);
+    }
+
+    @Override
+    public T higher(T value) {
+        return valueOf(locate(value, false).second);
+    }
+
+    @Override
+    public T lower(T value) {
+        return valueOf(locate(value, true).first);
+    }
+
+    @Override
+    public NavigableSet<T> subSet(T from, T to) {
+        if (from.compareTo(to) > 0) {
+            throw new IllegalArgumentException("Lower bound is greater than upper bound");
+        }
+        return new SubSet(new Bounds<>(from, to));
+    }
+
+    /*
+    Iterator over a snapshot of the keys in `range`, of all keys if it is null
+     */
+    private Iterator<T> iterator(Bounds<T> range) {
+        final SnapCollector<Node<T>> collector = acquireSnapCollector(range);
         collectSnapshot(collector);
-        return reconstruct(collector).iterator();
+        final Iterator<Node<T>> nodes = collector.iterator(ConcurrentSet::compare);
+        if (range == null) {
+            return values(nodes);
+        }
+        return new Iterator<T>() {
+            private Node<T> next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                final Node<T> result = next;
+                if (result == null) {
+                    throw new NoSuchElementException();
+                }
+                next = advance();
+                return result.getValue();
+            }
+
+            // The collector may cover a wider range than requested
+            private Node<T> advance() {
+                while (nodes.hasNext()) {
+                    final Node<T> node = nodes.next();
+                    if (range.contains(node)) {
+                        return node;
+                    }
+                    if (node.getValue().compareTo(range.to) >= 0) {
+                        break;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private static <V> Iterator<V> values(Iterator<Node<V>> nodes) {
+        return new Iterator<V>() {
+            @Override
+            public boolean hasNext() {
+                return nodes.hasNext();
+            }
+
+            @Override
+            public V next() {
+                return nodes.next().getValue();
+            }
+        };
+    }
+
+    private T valueOf(Node<T> node) {
+        return node == head || node == tail ? null : node.getValue();
     }
 
     private void reportDelete(Node<T> node) {
-        final SnapCollector<T> collector = snapCollectorHolder.get();
-        if (collector.isActive()) {
+        final SnapCollector<Node<T>> collector = snapCollectorHolder.get();
+        if (collector.isActive() && collector.covers(node)) {
             collector.addReport(new Report<>(node, Report.ReportType.DELETED));
         }
+        if (feed != null) {
+            sequenceDelete(node);
+        }
     }
 
     private void reportInsert(Node<T> node) {
-        final SnapCollector<T> collector = snapCollectorHolder.get();
-        if (collector.isActive() && !node.isDeleted()) {
+        final SnapCollector<Node<T>> collector = snapCollectorHolder.get();
+        if (collector.isActive() && collector.covers(node) && !node.isDeleted()) {
             collector.addReport(new Report<>(node, Report.ReportType.INSERTED));
         }
+        if (feed != null) {
+            sequenceInsert(node);
+        }
+    }
+
+    /*
+    Publishes the insertion of the node to the feed unless it already has a number.
+    Every thread that depends on a change numbers it first, so the numbers of the changes of a key
+    follow their linearization: a node is numbered as deleted only after it is numbered as inserted,
+    and it is unlinked only after that, before a new node with the same key can be inserted
+     */
+    private void sequenceInsert(Node<T> node) {
+        if (node.getStamp() != 0) {
+            return;
+        }
+        final long number = feed.claim();
+        if (node.compareAndSetStamp(0, number << 1)) {
+            feed.publish(number, node.getValue(), Report.ReportType.INSERTED);
+        } else {
+            feed.skip(number);
+        }
     }
 
-    private SnapCollector<T> acquireSnapCollector() {
-        SnapCollector<T> collector = snapCollectorHolder.get();
-        if (collector.isActive())
-            return collector;
-        SnapCollector<T> newCollector = new SnapCollector<>(true);
-        snapCollectorHolder.compareAndSet(collector, newCollector);
-        return snapCollectorHolder.get();
+    private void sequenceDelete(Node<T> node) {
+        sequenceInsert(node);
+        final long stamp = node.getStamp();
+        if ((stamp & 1) != 0) {
+            return;
+        }
+        final long number = feed.claim();
+        if (node.compareAndSetStamp(stamp, number << 1 | 1)) {
+            feed.publish(number, node.getValue(), Report.ReportType.DELETED);
+        } else {
+            feed.skip(number);
+        }
     }
 
-    private void collectSnapshot(SnapCollector<T> collector) {
-        Node<T> curr = head.getNext();
+    /*
+    Joins the active snapshot if it covers `range`, otherwise helps it to complete and starts a new one
+     */
+    private SnapCollector<Node<T>> acquireSnapCollector(Bounds<T> range) {
+        while (true) {
+            final SnapCollector<Node<T>> collector = snapCollectorHolder.get();
+            if (collector.isActive()) {
+                if (collector.covers(range)) {
+                    collector.join();
+                    return collector;
+                }
+                collectSnapshot(collector);
+            } else {
+                snapCollectorHolder.compareAndSet(collector, new SnapCollector<>(true, range, contention));
+            }
+        }
+    }
+
+    private void collectSnapshot(SnapCollector<Node<T>> collector) {
+        final boolean deactivated = collectNodes(collector) && blockFurtherNodes(collector);
+        collector.blockFurtherReports();
+        if (deactivated) {
+            recordSnapshot(collector);
+        }
+    }
+
+    /*
+    Completes node collection. Returns true for the only caller that has deactivated the collector
+     */
+    private static <V extends Comparable<V>> boolean blockFurtherNodes(SnapCollector<Node<V>> collector) {
+        collector.blockFurtherNodes();
+        return collector.deactivate();
+    }
+
+    private void recordSnapshot(SnapCollector<Node<T>> collector) {
+        final long reports = collector.reportCount();
+        snapshots.increment();
+        snapshotReports.add(reports);
+        if (stats != null) {
+            stats.snapshot(System.nanoTime() - collector.startedAt(), reports);
+        }
+    }
+
+    /*
+    Number of snapshots completed by iterators of the set
+     */
+    long snapshotCount() {
+        return snapshots.sum();
+    }
+
+    /*
+    Total number of reports received by the snapshots counted in `snapshotCount`
+     */
+    long snapshotReportCount() {
+        return snapshotReports.sum();
+    }
+
+    /*
+    Adds live nodes of the collector range to it.
+    Returns false if the collector has been deactivated before the end of the range was reached
+     */
+    private boolean collectNodes(SnapCollector<Node<T>> collector) {
+        final Bounds<T> range = (Bounds<T>) collector.range();
+        Node<T> curr = range == null ? head.getNext() : findPredecessor(range.from, false).getNext();
         while (collector.isActive()) {
-            if (curr != tail && !curr.isDeleted()) {
-                collector.addNode(curr);
+            if (curr == tail || range != null && curr.getValue().compareTo(range.to) >= 0) {
+                return true;
             }
-            if (curr == tail) {
-                collector.blockFurtherNodes();
-                collector.deactivate();
-                break;
+            if (!curr.isDeleted() && (range == null || range.contains(curr))) {
+                collector.addNode(curr);
             }
             curr = curr.getNext();
         }
-        collector.blockFurtherReports();
+        return false;
+    }
+
+    /*
+    Returns the first node that was not deleted when it followed head, or tail.
+    Deleted nodes in front of it are unlinked
+     */
+    private Node<T> firstNode() {
+        while (true) {
+            final Node<T> first = head.getNext();
+            if (first == tail || !first.isDeleted()) {
+                return first;
+            }
+            reportDelete(first);
+            if (head.compareAndSetNext(first, first.getNext()) && stats != null) {
+                stats.helperUnlink();
+            }
+        }
+    }
+
+    /*
+    Adds `value` starting the search from the cursor, see `Cursor`
+     */
+    boolean add(T value, Cursor<T> cursor) {
+        if (stats != null) {
+            stats.operation();
+        }
+        int failures = 0;
+        while (true) {
+            final Pair<Node<T>> place = find(value, cursor);
+            final Node<T> pred = place.first;
+            final Node<T> curr = place.second;
+            if (curr != tail && curr.getValue().compareTo(value) == 0) {
+                reportInsert(curr);
+                return false;
+            }
+            final Node<T> nodeToInsert = new Node<>(value, curr);
+            if (pred.compareAndSetNext(curr, nodeToInsert)) {
+                count.increment();
+                reportInsert(nodeToInsert);
+                buildIndex(nodeToInsert);
+                return true;
+            }
+            if (stats != null) {
+                stats.restart();
+            }
+            contention.backoff(++failures);
+        }
+    }
+
+    /*
+    Removes `value` starting the search from the cursor, see `Cursor`
+     */
+    boolean remove(T value, Cursor<T> cursor) {
+        if (stats != null) {
+            stats.operation();
+        }
+        int failures = 0;
+        while (true) {
+            final Pair<Node<T>> place = find(value, cursor);
+            final Node<T> pred = place.first;
+            final Node<T> curr = place.second;
+            if (curr == tail || curr.getValue().compareTo(value) != 0) {
+                return false;
+            }
+            // `curr` is not tail
+            final Node<T> succ = curr.getNext();
+            if (curr.markDeleted(succ)) {
+                count.decrement();
+                reportDelete(curr);
+                // Try remove physically
+                if (!pred.compareAndSetNext(curr, succ) && stats != null) {
+                    stats.casFailure();
+                }
+                return true;
+            }
+            if (stats != null) {
+                stats.restart();
+            }
+            contention.backoff(++failures);
+        }
     }
 
-    private java.util.Set<T> reconstruct(SnapCollector<T> collector) {
-        java.util.Set<Node<T>> nodes = new HashSet<>(collector.readNodes());
-        java.util.Set<Node<T>> insertReports = new HashSet<>();
-        java.util.Set<Node<T>> deleteReports = new HashSet<>();
-        collector.readReports().forEach(report -> {
-            switch (report.type) {
-                case DELETED:
-                    deleteReports.add(report.value);
+    private boolean contains(T value, Cursor<T> cursor) {
+        Node<T> pred = startNode(value, cursor, false);
+        Node<T> curr = pred.getNext();
+        boolean found = false;
+        int traversed = 0;
+        while (curr != tail) {
+            traversed++;
+            if (curr.isDeleted()) {
+                if (curr.getValue().compareTo(value) == 0) {
+                    reportDelete(curr);
+                }
+                curr = curr.getNext();
+            } else {
+                int cmpResult = curr.getValue().compareTo(value);
+                if (cmpResult == 0) {
+                    reportInsert(curr);
+                    found = true;
                     break;
-                case INSERTED:
-                    insertReports.add(report.value);
+                } else if (cmpResult > 0) {
                     break;
+                } else {
+                    pred = curr;
+                    curr = curr.getNext();
+                }
             }
-        });
-        nodes.addAll(insertReports);
-        nodes.removeAll(deleteReports);
-        return nodes.stream().map(Node::getValue).collect(Collectors.toCollection(TreeSet::new));
+        }
+        if (cursor != null) {
+            cursor.node = pred;
+        }
+        if (stats != null) {
+            stats.operation();
+            stats.traversed(traversed);
+        }
+        return found;
     }
 
+    private Pair<Node<T>> find(T value, Cursor<T> cursor) {
+        return find(value, true, cursor);
+    }
 
-    private Pair<Node<T>> find(T value) {
+    /*
+    Returns the first node not before the searched position (see `reached`) and its predecessor.
+    Deleted nodes on the way are unlinked and reported.
+    Live nodes are not reported here: only the callers know which of them their result depends on
+     */
+    private Pair<Node<T>> find(T value, boolean inclusive, Cursor<T> cursor) {
+        int traversed = 0;
+        int failures = 0;
         while (true) {
-            Node<T> pred = head;
+            Node<T> pred = startNode(value, cursor, true);
             Node<T> curr = pred.getNext();
             boolean continueOuterLoop = false;
             while (curr != tail) {
+                traversed++;
                 Node<T> succ = curr.getNext();
                 if (curr.isDeleted()) {
                     reportDelete(curr);
                     // Try remove physically
-                    if (pred.compareAndSet(curr, succ, false, false)) {
+                    if (pred.compareAndSetNext(curr, succ)) {
+                        if (stats != null) {
+                            stats.helperUnlink();
+                        }
                         curr = succ;
                     } else {
                         continueOuterLoop = true;
                         break;
                     }
                 } else {
-                    reportInsert(curr);
-                    if (curr.getValue().compareTo(value) >= 0) {
+                    if (reached(curr, value, inclusive)) {
                         break;
                     } else {
                         pred = curr;
@@ -173,26 +638,213 @@ final class ConcurrentSet<T extends Comparable<T>> implements Set<T> {
                 }
             }
             if (continueOuterLoop) {
+                if (stats != null) {
+                    stats.restart();
+                }
+                contention.backoff(++failures);
                 continue;
             }
+            if (cursor != null) {
+                cursor.node = pred;
+            }
+            if (stats != null) {
+                stats.traversed(traversed);
+            }
             return new Pair<>(pred, curr);
         }
     }
 
+    /*
+    Returns adjacent nodes around the searched position (see `reached`).
+    Both nodes were live at the moment when the first one was followed by the second one
+     */
+    private Pair<Node<T>> locate(T value, boolean inclusive) {
+        if (stats != null) {
+            stats.operation();
+        }
+        while (true) {
+            final Pair<Node<T>> place = find(value, inclusive, null);
+            final Node<T> curr = place.second;
+            if (place.first.isFollowedBy(curr) && !curr.isDeleted()) {
+                if (place.first != head) {
+                    reportInsert(place.first);
+                }
+                if (curr != tail) {
+                    reportInsert(curr);
+                }
+                return place;
+            }
+        }
+    }
+
+    /*
+    Checks that the node is not before the searched position: not less than `value` when `inclusive`,
+    greater than `value` otherwise. A null `value` stands for the position after the last node
+     */
+    private static <V extends Comparable<V>> boolean reached(Node<V> node, V value, boolean inclusive) {
+        if (value == null) {
+            return false;
+        }
+        final int cmpResult = node.getValue().compareTo(value);
+        return cmpResult > 0 || inclusive && cmpResult == 0;
+    }
+
+    private static <V extends Comparable<V>> int compare(Node<V> a, Node<V> b) {
+        return a.getValue().compareTo(b.getValue());
+    }
+
+    /*
+    Node to start searching `value` from: the cursor position if it is still not deleted and precedes `value`,
+    otherwise the predecessor found through the index, see `searchIndex`
+     */
+    private Node<T> startNode(T value, Cursor<T> cursor, boolean unlink) {
+        if (cursor != null) {
+            final Node<T> node = cursor.node;
+            if (value != null && node != null && node != head && !node.isDeleted() && node.getValue().compareTo(value) < 0) {
+                return node;
+            }
+        }
+        return findPredecessor(value, unlink);
+    }
+
+    /*
+    Copies strictly ascending values.
+    Throws `IllegalArgumentException` if they are not strictly ascending
+     */
+    private static <V extends Comparable<V>> List<V> sortedCopy(Iterable<? extends V> values) {
+        final List<V> copy = new ArrayList<>();
+        for (V value : values) {
+            if (!copy.isEmpty() && copy.get(copy.size() - 1).compareTo(value) >= 0) {
+                throw new IllegalArgumentException("Values are not sorted");
+            }
+            copy.add(value);
+        }
+        return copy;
+    }
+
+    /*
+    Returns head or a node with a smaller value that was not deleted when the index was traversed.
+    A null `value` stands for the position after the last node
+     */
+    private Node<T> findPredecessor(T value, boolean unlink) {
+        return searchIndex(value, 0, unlink).node;
+    }
+
+    /*
+    Descends the index down to `level` and returns the rightmost index entry with a smaller value.
+    Entries of deleted nodes are unlinked on the way if `unlink` is set, otherwise they are stepped over
+    without writes, so lookups never retry
+     */
+    private Index<T> searchIndex(T value, int level, boolean unlink) {
+        int currentLevel = Math.max(indexLevel.get(), level);
+        Index<T> q = heads[currentLevel];
+        while (true) {
+            Index<T> r = q.getRight();
+            while (r != null && r.node.isDeleted()) {
+                if (unlink) {
+                    q.compareAndSetRight(r, r.getRight());
+                    r = q.getRight();
+                } else {
+                    r = r.getRight();
+                }
+            }
+            if (r != null && (value == null || r.node.getValue().compareTo(value) < 0)) {
+                q = r;
+                continue;
+            }
+            if (currentLevel == level) {
+                return q;
+            }
+            q = q.down;
+            currentLevel--;
+        }
+    }
+
+    private void buildIndex(Node<T> node) {
+        final int levels = IndexLevels.randomLevel();
+        Index<T> down = null;
+        for (int level = 0; level < levels; level++) {
+            final Index<T> index = new Index<>(node, down);
+            if (!linkIndex(index, level)) {
+                return;
+            }
+            down = index;
+        }
+        int current = indexLevel.get();
+        while (current < levels - 1 && !indexLevel.compareAndSet(current, levels - 1)) {
+            current = indexLevel.get();
+        }
+    }
+
+    /*
+    Links strictly ascending values after the last node of a set that is not shared yet
+     */
+    private void appendSorted(Iterator<? extends T> values) {
+        final Index<T>[] last = heads.clone();
+        Node<T> pred = head;
+        int topLevel = 0;
+        while (values.hasNext()) {
+            final T value = values.next();
+            if (pred != head && pred.getValue().compareTo(value) >= 0) {
+                throw new IllegalArgumentException("Values are not sorted");
+            }
+            final Node<T> node = new Node<>(value, tail);
+            pred.compareAndSetNext(tail, node);
+            pred = node;
+            final int levels = IndexLevels.randomLevel();
+            Index<T> down = null;
+            for (int level = 0; level < levels; level++) {
+                final Index<T> index = new Index<>(node, down);
+                last[level].setRight(index);
+                last[level] = index;
+                down = index;
+            }
+            topLevel = Math.max(topLevel, levels - 1);
+            count.increment();
+        }
+        indexLevel.set(topLevel);
+    }
+
+    private boolean linkIndex(Index<T> index, int level) {
+        final T value = index.node.getValue();
+        while (!index.node.isDeleted()) {
+            final Index<T> pred = searchIndex(value, level, true);
+            final Index<T> succ = pred.getRight();
+            index.setRight(succ);
+            if (pred.compareAndSetRight(succ, index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /*
     Node element
      */
     private static class Node<V> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<Node> STAMP =
+                AtomicLongFieldUpdater.newUpdater(Node.class, "stamp");
+
         /**
          * Value
          */
         private final V value;
 
         /**
-         * Flag indicating that the current node has been deleted
-         * Reference to the next node
+         * Reference to the next node.
+         * Once the current node has been deleted it refers to a marker whose next is the successor
+         */
+        private volatile Node<V> next;
+
+        /**
+         * Number of the last change of the node in the change feed shifted left by one,
+         * the lowest bit is set for the deletion. 0 if the insertion has not been numbered
          */
-        private final AtomicMarkableReference<Node<V>> next;
+        private volatile long stamp;
 
         Node(V value) {
             this(value, null);
@@ -200,11 +852,11 @@ final class ConcurrentSet<T extends Comparable<T>> implements Set<T> {
 
         Node(V value, Node<V> next) {
             this.value = value;
-            this.next = new AtomicMarkableReference<>(next, false);
+            this.next = next;
         }
 
         boolean isDeleted() {
-            return next.isMarked();
+            return next instanceof Marker;
         }
 
         V getValue() {
@@ -212,89 +864,209 @@ final class ConcurrentSet<T extends Comparable<T>> implements Set<T> {
         }
 
         Node<V> getNext() {
-            return next.getReference();
+            final Node<V> succ = next;
+            return succ instanceof Marker ? succ.next : succ;
         }
 
-        boolean compareAndSet(Node<V> expectedReference,
-                              Node<V> newReference,
-                              boolean expectedDeleted,
-                              boolean newDeleted) {
-            return next.compareAndSet(expectedReference, newReference, expectedDeleted, newDeleted);
+        /*
+        Checks that the node is not deleted and `node` is its successor
+         */
+        boolean isFollowedBy(Node<V> node) {
+            return next == node;
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean compareAndSetNext(Node<V> expectedNext, Node<V> newNext) {
+            return NEXT.compareAndSet(this, expectedNext, newNext);
+        }
+
+        long getStamp() {
+            return stamp;
+        }
+
+        boolean compareAndSetStamp(long expectedStamp, long newStamp) {
+            return STAMP.compareAndSet(this, expectedStamp, newStamp);
+        }
+
+        /*
+        Logically deletes the node if its successor is still `expectedNext`
+         */
+        @SuppressWarnings("unchecked")
+        boolean markDeleted(Node<V> expectedNext) {
+            return NEXT.compareAndSet(this, expectedNext, new Marker<>(expectedNext));
         }
     }
 
     /*
-    Pair
+    Marker placed after a deleted node, freezes its next reference
      */
-    static class Pair<V> {
-
-        final V first;
+    private static final class Marker<V> extends Node<V> {
+        Marker(Node<V> next) {
+            super(null, next);
+        }
+    }
 
-        final V second;
+    /*
+    Key interval [from, to)
+     */
+    private static final class Bounds<V extends Comparable<V>> implements SnapCollector.Range<Node<V>> {
+        final V from;
+        final V to;
 
-        Pair(V first, V second) {
-            this.first = first;
-            this.second = second;
+        Bounds(V from, V to) {
+            this.from = from;
+            this.to = to;
         }
-    }
 
-    private static class Report<V> {
-        final Node<V> value;
-        final ReportType type;
+        boolean contains(V value) {
+            return from.compareTo(value) <= 0 && value.compareTo(to) < 0;
+        }
 
-        private Report(Node<V> value, ReportType type) {
-            this.value = value;
-            this.type = type;
+        @Override
+        public boolean contains(Node<V> node) {
+            return contains(node.getValue());
         }
 
-        enum ReportType {
-            INSERTED,
-            DELETED
+        @Override
+        public boolean includes(SnapCollector.Range<Node<V>> other) {
+            final Bounds<V> bounds = (Bounds<V>) other;
+            return from.compareTo(bounds.from) <= 0 && bounds.to.compareTo(to) <= 0;
         }
     }
 
     /*
-    Snapshot collector
+    View of the keys in `bounds`
      */
-    private static class SnapCollector<V> {
-        private final Collection<Report<V>> reports = new ConcurrentCollection<>();
-        private final Collection<Node<V>> nodes = new ConcurrentCollection<>();
-        private final AtomicBoolean isActive = new AtomicBoolean(true);
+    private final class SubSet implements NavigableSet<T> {
+        private final Bounds<T> bounds;
+
+        SubSet(Bounds<T> bounds) {
+            this.bounds = bounds;
+        }
+
+        @Override
+        public boolean add(T value) {
+            if (!bounds.contains(value)) {
+                throw new IllegalArgumentException("Value is out of range");
+            }
+            return ConcurrentSet.this.add(value);
+        }
+
+        @Override
+        public boolean remove(T value) {
+            return bounds.contains(value) && ConcurrentSet.this.remove(value);
+        }
+
+        @Override
+        public boolean contains(T value) {
+            return bounds.contains(value) && ConcurrentSet.this.contains(value);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return ceiling(bounds.from) == null;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return ConcurrentSet.this.iterator(bounds);
+        }
+
+        @Override
+        public T first() {
+            final T first = ceiling(bounds.from);
+            if (first == null) {
+                throw new NoSuchElementException();
+            }
+            return first;
+        }
+
+        @Override
+        public T last() {
+            final T last = lower(bounds.to);
+            if (last == null) {
+                throw new NoSuchElementException();
+            }
+            return last;
+        }
+
+        @Override
+        public T ceiling(T value) {
+            return value.compareTo(bounds.from) < 0 ? inRange(ConcurrentSet.this.ceiling(bounds.from))
+                    : inRange(ConcurrentSet.this.ceiling(value));
+        }
 
-        SnapCollector(boolean isActive) {
-            this.isActive.set(isActive);
+        @Override
+        public T floor(T value) {
+            return value.compareTo(bounds.to) >= 0 ? inRange(ConcurrentSet.this.lower(bounds.to))
+                    : inRange(ConcurrentSet.this.floor(value));
         }
 
-        void deactivate() {
-            isActive.set(false);
+        @Override
+        public T higher(T value) {
+            return value.compareTo(bounds.from) < 0 ? inRange(ConcurrentSet.this.ceiling(bounds.from))
+                    : inRange(ConcurrentSet.this.higher(value));
         }
 
-        boolean isActive() {
-            return isActive.get();
+        @Override
+        public T lower(T value) {
+            return value.compareTo(bounds.to) > 0 ? inRange(ConcurrentSet.this.lower(bounds.to))
+                    : inRange(ConcurrentSet.this.lower(value));
         }
 
-        void addReport(Report<V> report) {
-            reports.add(report);
+        @Override
+        public NavigableSet<T> subSet(T from, T to) {
+            if (from.compareTo(to) > 0) {
+                throw new IllegalArgumentException("Lower bound is greater than upper bound");
+            }
+            final Bounds<T> subBounds = new Bounds<>(from, to);
+            if (!bounds.includes(subBounds)) {
+                throw new IllegalArgumentException("Bounds are out of range");
+            }
+            return new SubSet(subBounds);
         }
 
-        void addNode(Node<V> node) {
-            nodes.add(node);
+        private T inRange(T value) {
+            return value != null && bounds.contains(value) ? value : null;
         }
+    }
+
+    /*
+    Position of a bulk operation: the last predecessor found, reused as the start of the next search.
+    Operations with ascending values that share a cursor take one pass over the list
+     */
+    static final class Cursor<V> {
+        Node<V> node;
+    }
+
+    /*
+    Index entry: refers to a node of the list and to the entry one level below
+     */
+    private static class Index<V> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Index, Index> RIGHT =
+                AtomicReferenceFieldUpdater.newUpdater(Index.class, Index.class, "right");
+
+        final Node<V> node;
+        final Index<V> down;
+        private volatile Index<V> right;
 
-        void blockFurtherNodes() {
-            nodes.blockFurtherAdd();
+        Index(Node<V> node, Index<V> down) {
+            this.node = node;
+            this.down = down;
         }
 
-        void blockFurtherReports() {
-            reports.blockFurtherAdd();
+        Index<V> getRight() {
+            return right;
         }
 
-        List<Node<V>> readNodes() {
-            return nodes.content();
+        void setRight(Index<V> newRight) {
+            right = newRight;
         }
 
-        List<Report<V>> readReports() {
-            return reports.content();
+        @SuppressWarnings("unchecked")
+        boolean compareAndSetRight(Index<V> expectedRight, Index<V> newRight) {
+            return RIGHT.compareAndSet(this, expectedRight, newRight);
         }
     }
 }
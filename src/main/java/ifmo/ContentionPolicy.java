@@ -0,0 +1,56 @@
+package ifmo;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+What a thread does after a failed CAS before it retries.
+Operations call `backoff` only on failure, so a policy costs nothing while there is no contention
+ */
+public interface ContentionPolicy {
+
+    /*
+    Retry at once
+     */
+    ContentionPolicy NONE = attempt -> {
+    };
+
+    /*
+    Called after the failed CAS number `attempt` of one operation, attempts are counted from 1
+     */
+    void backoff(int attempt);
+
+    /*
+    Randomized exponential backoff: the thread spins for up to `minSpins * 2^(attempt - 1)` iterations,
+    but not more than `maxSpins`, and yields the processor once the limit is reached
+     */
+    static ContentionPolicy exponential(int minSpins, int maxSpins) {
+        if (minSpins <= 0 || maxSpins < minSpins) {
+            throw new IllegalArgumentException("Illegal spin limits " + minSpins + ", " + maxSpins);
+        }
+        return attempt -> {
+            final int shift = Math.min(attempt - 1, Integer.numberOfLeadingZeros(minSpins) - 1);
+            final int limit = Math.min(maxSpins, minSpins << shift);
+            int seed = ThreadLocalRandom.current().nextInt() | 1;
+            int spins = limit / 2 + (seed >>> 1) % (limit / 2 + 1);
+            // Xorshift keeps the loop from being optimized away, as in `java.util.concurrent.Exchanger`
+            while (spins > 0) {
+                seed ^= seed << 13;
+                seed ^= seed >>> 17;
+                seed ^= seed << 5;
+                if (seed != 0) {
+                    spins--;
+                }
+            }
+            if (limit == maxSpins) {
+                Thread.yield();
+            }
+        };
+    }
+
+    /*
+    Exponential backoff from 16 up to 4096 spins
+     */
+    static ContentionPolicy exponential() {
+        return exponential(16, 4096);
+    }
+}
@@ -0,0 +1,127 @@
+package ifmo;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+
+/*
+Epoch-based reclamation of records referred to by numbers.
+Every access to shared records happens between `enter` and `exit`. A record that has been unlinked
+is passed to `retire` together with the global epoch, and it is handed to `free` once the global epoch
+has advanced twice since then: by that time every thread that could have reached the record has left.
+The epoch advances when all threads inside a critical section have observed the current one.
+A thread frees its records on every `RECLAIM_THRESHOLD`-th retirement and, if it retires rarely,
+on every `RECLAIM_THRESHOLD`-th exit. Records of a thread that stops entering critical sections,
+at most those of its last two epochs, stay retired until `drain`
+ */
+final class EpochReclaimer {
+    private static final long INACTIVE = -1;
+    private static final int RECLAIM_THRESHOLD = 64;
+
+    private final LongConsumer free;
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicReference<Participant> participants = new AtomicReference<>();
+    private final ThreadLocal<Participant> participant = ThreadLocal.withInitial(this::register);
+
+    EpochReclaimer(LongConsumer free) {
+        this.free = free;
+    }
+
+    /*
+    Starts a critical section of the current thread. Critical sections must not be nested
+     */
+    void enter() {
+        participant.get().epoch = epoch.get();
+    }
+
+    void exit() {
+        final Participant current = participant.get();
+        current.epoch = INACTIVE;
+        if (++current.exits % RECLAIM_THRESHOLD == 0 && current.size != 0) {
+            tryAdvance();
+            current.reclaim(epoch.get() - 2, free);
+        }
+    }
+
+    /*
+    Schedules an unlinked record to be freed. Must be called inside a critical section
+     */
+    void retire(long record) {
+        final Participant current = participant.get();
+        if (current.retire(record, epoch.get()) % RECLAIM_THRESHOLD == 0) {
+            tryAdvance();
+            current.reclaim(epoch.get() - 2, free);
+        }
+    }
+
+    /*
+    Frees the records retired by all threads. Must not be called concurrently with other methods
+     */
+    void drain() {
+        for (Participant p = participants.get(); p != null; p = p.next) {
+            p.reclaim(Long.MAX_VALUE, free);
+        }
+    }
+
+    private void tryAdvance() {
+        final long current = epoch.get();
+        for (Participant p = participants.get(); p != null; p = p.next) {
+            final long observed = p.epoch;
+            if (observed != INACTIVE && observed != current) {
+                return;
+            }
+        }
+        epoch.compareAndSet(current, current + 1);
+    }
+
+    private Participant register() {
+        final Participant p = new Participant();
+        do {
+            p.next = participants.get();
+        } while (!participants.compareAndSet(p.next, p));
+        return p;
+    }
+
+    /*
+    Epoch of a thread and the records it has retired, in the order of their epochs
+     */
+    private static final class Participant {
+        volatile long epoch = INACTIVE;
+        Participant next;
+
+        private long[] records = new long[RECLAIM_THRESHOLD];
+        private long[] epochs = new long[RECLAIM_THRESHOLD];
+        private int size;
+        private long retired;
+        private int exits;
+
+        /*
+        Returns the number of records retired by the thread so far
+         */
+        long retire(long record, long epoch) {
+            if (size == records.length) {
+                records = Arrays.copyOf(records, size * 2);
+                epochs = Arrays.copyOf(epochs, size * 2);
+            }
+            records[size] = record;
+            epochs[size] = epoch;
+            size++;
+            return ++retired;
+        }
+
+        /*
+        Frees the records retired not later than `safeEpoch`
+         */
+        void reclaim(long safeEpoch, LongConsumer free) {
+            int freed = 0;
+            while (freed < size && epochs[freed] <= safeEpoch) {
+                free.accept(records[freed]);
+                freed++;
+            }
+            System.arraycopy(records, freed, records, 0, size - freed);
+            System.arraycopy(epochs, freed, epochs, 0, size - freed);
+            size -= freed;
+        }
+    }
+}
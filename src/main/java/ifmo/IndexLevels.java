@@ -0,0 +1,44 @@
+package ifmo;
+
+import java.lang.reflect.Array;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.UnaryOperator;
+
+/*
+Shape of the skip-list index shared by the sets: the number of levels and the random height of a tower
+ */
+final class IndexLevels {
+    static final int MAX_LEVEL = 16;
+
+    private IndexLevels() {
+    }
+
+    /*
+    Number of index levels for a new node, geometric with p = 1/4
+     */
+    static int randomLevel() {
+        int random = ThreadLocalRandom.current().nextInt();
+        int level = 0;
+        while ((random & 3) == 0 && level < MAX_LEVEL) {
+            level++;
+            random >>>= 2;
+        }
+        return level;
+    }
+
+    /*
+    Head entries of all levels, `above` creates the entry over the given one, or over null for the lowest level.
+    The array has the runtime class of the entries, so generic entry classes need no raw array creation
+     */
+    @SuppressWarnings("unchecked")
+    static <I> I[] heads(UnaryOperator<I> above) {
+        I down = above.apply(null);
+        final I[] heads = (I[]) Array.newInstance(down.getClass(), MAX_LEVEL);
+        heads[0] = down;
+        for (int level = 1; level < MAX_LEVEL; level++) {
+            down = above.apply(down);
+            heads[level] = down;
+        }
+        return heads;
+    }
+}
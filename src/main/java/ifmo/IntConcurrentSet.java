@@ -0,0 +1,99 @@
+package ifmo;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/*
+ Lock-free set of `int` keys, backed by `LongConcurrentSet` so keys are never boxed.
+ */
+final class IntConcurrentSet implements Set<Integer> {
+    private final LongConcurrentSet set = new LongConcurrentSet();
+
+    public boolean add(int key) {
+        return set.add(key);
+    }
+
+    public boolean remove(int key) {
+        return set.remove(key);
+    }
+
+    public boolean contains(int key) {
+        return set.contains(key);
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return add(value.intValue());
+    }
+
+    @Override
+    public boolean remove(Integer value) {
+        return remove(value.intValue());
+    }
+
+    @Override
+    public boolean contains(Integer value) {
+        return contains(value.intValue());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return set.isEmpty();
+    }
+
+    @Override
+    public long size() {
+        return set.size();
+    }
+
+    @Override
+    public long estimatedSize() {
+        return set.estimatedSize();
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        final PrimitiveIterator.OfLong iterator = set.iterator();
+        return new PrimitiveIterator.OfInt() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                return (int) iterator.nextLong();
+            }
+        };
+    }
+
+    /*
+    Spliterator over the keys of one snapshot, copied into an array
+     */
+    @Override
+    public Spliterator.OfInt spliterator() {
+        final PrimitiveIterator.OfLong iterator = set.iterator();
+        int[] keys = new int[16];
+        int size = 0;
+        while (iterator.hasNext()) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            keys[size++] = (int) iterator.nextLong();
+        }
+        return Spliterators.spliterator(keys, 0, size, Spliterator.ORDERED | Spliterator.SORTED
+                | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    public IntStream intStream() {
+        return StreamSupport.intStream(spliterator(), false);
+    }
+
+    public IntStream parallelIntStream() {
+        return StreamSupport.intStream(spliterator(), true);
+    }
+}
@@ -0,0 +1,91 @@
+package ifmo;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+Binary format of the keys of a snapshot file
+ */
+public interface KeyCodec<T> {
+
+    KeyCodec<Integer> INTEGER = new KeyCodec<Integer>() {
+        @Override
+        public int size(Integer value) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void write(Integer value, ByteBuffer buffer) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    };
+
+    KeyCodec<Long> LONG = new KeyCodec<Long>() {
+        @Override
+        public int size(Long value) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(Long value, ByteBuffer buffer) {
+            buffer.putLong(value);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+    };
+
+    /*
+    UTF-8 bytes prefixed with their number
+     */
+    KeyCodec<String> STRING = new KeyCodec<String>() {
+        @Override
+        public int size(String value) {
+            return Integer.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        @Override
+        public void write(String value, ByteBuffer buffer) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        @Override
+        public String read(ByteBuffer buffer) throws IOException {
+            final int length = buffer.getInt();
+            if (length < 0) {
+                throw new IOException("Negative string length " + length);
+            }
+            // Do not allocate more than the buffer can hold
+            if (length > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /*
+    Number of bytes `write` puts for the value
+     */
+    int size(T value);
+
+    void write(T value, ByteBuffer buffer);
+
+    /*
+    Reads a value written by `write`, throws `BufferUnderflowException` if the buffer ends before it
+    and `IOException` if the bytes cannot be a value
+     */
+    T read(ByteBuffer buffer) throws IOException;
+}
@@ -0,0 +1,404 @@
+package ifmo;
+
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+
+/*
+ Lock-free set of `long` keys.
+ Same algorithm as `ConcurrentSet`, but keys are stored inline in the nodes and compared without boxing.
+ The list and index code is a deliberate fork: sharing it with `ConcurrentSet` would put either boxed keys
+ or a virtual key comparison on every step of a traversal, which is what this class exists to avoid,
+ and `ConcurrentSet` also carries range snapshots, statistics, contention back-off and the change feed.
+ The index shape and the snapshot collector are shared through `IndexLevels` and `SnapCollector`.
+ */
+final class LongConcurrentSet implements LongSet {
+    private final Node tail = new Node(0);
+    private final Node head = new Node(0, tail);
+    private final AtomicReference<SnapCollector<Node>> snapCollectorHolder = new AtomicReference<>(new SnapCollector<>(false));
+    private final Index[] heads = IndexLevels.heads(down -> new Index(head, down));
+    private final AtomicInteger indexLevel = new AtomicInteger();
+    private final LongAdder count = new LongAdder();
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder snapshotReports = new LongAdder();
+
+    /*
+    Creates a set of strictly ascending `keys` in one pass, see `ConcurrentSet.ofSorted`.
+    Throws `IllegalArgumentException` if the keys are not strictly ascending
+     */
+    static LongConcurrentSet ofSorted(PrimitiveIterator.OfLong keys) {
+        final LongConcurrentSet set = new LongConcurrentSet();
+        set.appendSorted(keys);
+        return set;
+    }
+
+    static LongConcurrentSet ofSorted(LongStream keys) {
+        return ofSorted(keys.iterator());
+    }
+
+    @Override
+    public boolean add(long key) {
+        while (true) {
+            final Pair<Node> place = find(key);
+            final Node pred = place.first;
+            final Node curr = place.second;
+            if (curr != tail && curr.key == key) {
+                reportInsert(curr);
+                return false;
+            }
+            final Node nodeToInsert = new Node(key, curr);
+            if (pred.compareAndSetNext(curr, nodeToInsert)) {
+                count.increment();
+                reportInsert(nodeToInsert);
+                buildIndex(nodeToInsert);
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(long key) {
+        while (true) {
+            final Pair<Node> place = find(key);
+            final Node pred = place.first;
+            final Node curr = place.second;
+            if (curr == tail || curr.key != key) {
+                return false;
+            }
+            // `curr` is not tail
+            final Node succ = curr.getNext();
+            if (curr.markDeleted(succ)) {
+                count.decrement();
+                reportDelete(curr);
+                // Try remove physically
+                pred.compareAndSetNext(curr, succ);
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(long key) {
+        Node curr = findPredecessor(key, false).getNext();
+        while (curr != tail) {
+            if (curr.isDeleted()) {
+                if (curr.key == key) {
+                    reportDelete(curr);
+                }
+                curr = curr.getNext();
+            } else if (curr.key == key) {
+                reportInsert(curr);
+                return true;
+            } else if (curr.key > key) {
+                return false;
+            } else {
+                curr = curr.getNext();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        final Node first = firstNode();
+        if (first == tail) {
+            return true;
+        }
+        reportInsert(first);
+        return false;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        final SnapCollector<Node> collector = SnapCollector.acquire(snapCollectorHolder);
+        collectSnapshot(collector);
+        return LongSet.keys(collector.iterator((a, b) -> Long.compare(a.key, b.key)), node -> node.key);
+    }
+
+    @Override
+    public long estimatedSize() {
+        return Math.max(0, count.sum());
+    }
+
+    private void reportDelete(Node node) {
+        final SnapCollector<Node> collector = snapCollectorHolder.get();
+        if (collector.isActive()) {
+            collector.addReport(new Report<>(node, Report.ReportType.DELETED));
+        }
+    }
+
+    private void reportInsert(Node node) {
+        final SnapCollector<Node> collector = snapCollectorHolder.get();
+        if (collector.isActive() && !node.isDeleted()) {
+            collector.addReport(new Report<>(node, Report.ReportType.INSERTED));
+        }
+    }
+
+    private void collectSnapshot(SnapCollector<Node> collector) {
+        Node curr = head.getNext();
+        boolean deactivated = false;
+        while (collector.isActive()) {
+            if (curr != tail && !curr.isDeleted()) {
+                collector.addNode(curr);
+            }
+            if (curr == tail) {
+                collector.blockFurtherNodes();
+                deactivated = collector.deactivate();
+                break;
+            }
+            curr = curr.getNext();
+        }
+        collector.blockFurtherReports();
+        if (deactivated) {
+            snapshots.increment();
+            snapshotReports.add(collector.reportCount());
+        }
+    }
+
+    /*
+    Number of snapshots completed by iterators of the set
+     */
+    long snapshotCount() {
+        return snapshots.sum();
+    }
+
+    /*
+    Total number of reports received by the snapshots counted in `snapshotCount`
+     */
+    long snapshotReportCount() {
+        return snapshotReports.sum();
+    }
+
+    /*
+    Returns the first node that was not deleted when it followed head, or tail.
+    Deleted nodes in front of it are unlinked
+     */
+    private Node firstNode() {
+        while (true) {
+            final Node first = head.getNext();
+            if (first == tail || !first.isDeleted()) {
+                return first;
+            }
+            reportDelete(first);
+            head.compareAndSetNext(first, first.getNext());
+        }
+    }
+
+    /*
+    Returns the first node with a key not less than `key` and its predecessor.
+    Deleted nodes on the way are unlinked and reported, live nodes are reported by the callers
+     */
+    private Pair<Node> find(long key) {
+        while (true) {
+            Node pred = findPredecessor(key, true);
+            Node curr = pred.getNext();
+            boolean continueOuterLoop = false;
+            while (curr != tail) {
+                Node succ = curr.getNext();
+                if (curr.isDeleted()) {
+                    reportDelete(curr);
+                    // Try remove physically
+                    if (pred.compareAndSetNext(curr, succ)) {
+                        curr = succ;
+                    } else {
+                        continueOuterLoop = true;
+                        break;
+                    }
+                } else {
+                    if (curr.key >= key) {
+                        break;
+                    } else {
+                        pred = curr;
+                        curr = succ;
+                    }
+                }
+            }
+            if (continueOuterLoop) {
+                continue;
+            }
+            return new Pair<>(pred, curr);
+        }
+    }
+
+    /*
+    Returns head or a node with a smaller key that was not deleted when the index was traversed
+     */
+    private Node findPredecessor(long key, boolean unlink) {
+        return searchIndex(key, 0, unlink).node;
+    }
+
+    /*
+    Descends the index down to `level` and returns the rightmost index entry with a smaller key.
+    Entries of deleted nodes are unlinked on the way if `unlink` is set, `contains` steps over them without writes
+     */
+    private Index searchIndex(long key, int level, boolean unlink) {
+        int currentLevel = Math.max(indexLevel.get(), level);
+        Index q = heads[currentLevel];
+        while (true) {
+            Index r = q.getRight();
+            while (r != null && r.node.isDeleted()) {
+                if (unlink) {
+                    q.compareAndSetRight(r, r.getRight());
+                    r = q.getRight();
+                } else {
+                    r = r.getRight();
+                }
+            }
+            if (r != null && r.node.key < key) {
+                q = r;
+                continue;
+            }
+            if (currentLevel == level) {
+                return q;
+            }
+            q = q.down;
+            currentLevel--;
+        }
+    }
+
+    private void buildIndex(Node node) {
+        final int levels = IndexLevels.randomLevel();
+        Index down = null;
+        for (int level = 0; level < levels; level++) {
+            final Index index = new Index(node, down);
+            if (!linkIndex(index, level)) {
+                return;
+            }
+            down = index;
+        }
+        int current = indexLevel.get();
+        while (current < levels - 1 && !indexLevel.compareAndSet(current, levels - 1)) {
+            current = indexLevel.get();
+        }
+    }
+
+    /*
+    Links strictly ascending keys after the last node of a set that is not shared yet
+     */
+    private void appendSorted(PrimitiveIterator.OfLong keys) {
+        final Index[] last = heads.clone();
+        Node pred = head;
+        int topLevel = 0;
+        while (keys.hasNext()) {
+            final long key = keys.nextLong();
+            if (pred != head && pred.key >= key) {
+                throw new IllegalArgumentException("Keys are not sorted");
+            }
+            final Node node = new Node(key, tail);
+            pred.compareAndSetNext(tail, node);
+            pred = node;
+            final int levels = IndexLevels.randomLevel();
+            Index down = null;
+            for (int level = 0; level < levels; level++) {
+                final Index index = new Index(node, down);
+                last[level].setRight(index);
+                last[level] = index;
+                down = index;
+            }
+            topLevel = Math.max(topLevel, levels - 1);
+            count.increment();
+        }
+        indexLevel.set(topLevel);
+    }
+
+    private boolean linkIndex(Index index, int level) {
+        while (!index.node.isDeleted()) {
+            final Index pred = searchIndex(index.node.key, level, true);
+            final Index succ = pred.getRight();
+            index.setRight(succ);
+            if (pred.compareAndSetRight(succ, index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+    Node element
+     */
+    private static class Node {
+        private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+        /**
+         * Key
+         */
+        private final long key;
+
+        /**
+         * Reference to the next node.
+         * Once the current node has been deleted it refers to a marker whose next is the successor
+         */
+        private volatile Node next;
+
+        Node(long key) {
+            this(key, null);
+        }
+
+        Node(long key, Node next) {
+            this.key = key;
+            this.next = next;
+        }
+
+        boolean isDeleted() {
+            return next instanceof Marker;
+        }
+
+        Node getNext() {
+            final Node succ = next;
+            return succ instanceof Marker ? succ.next : succ;
+        }
+
+        boolean compareAndSetNext(Node expectedNext, Node newNext) {
+            return NEXT.compareAndSet(this, expectedNext, newNext);
+        }
+
+        /*
+        Logically deletes the node if its successor is still `expectedNext`
+         */
+        boolean markDeleted(Node expectedNext) {
+            return NEXT.compareAndSet(this, expectedNext, new Marker(expectedNext));
+        }
+    }
+
+    /*
+    Marker placed after a deleted node, freezes its next reference
+     */
+    private static final class Marker extends Node {
+        Marker(Node next) {
+            super(0, next);
+        }
+    }
+
+    /*
+    Index entry: refers to a node of the list and to the entry one level below
+     */
+    private static class Index {
+        private static final AtomicReferenceFieldUpdater<Index, Index> RIGHT =
+                AtomicReferenceFieldUpdater.newUpdater(Index.class, Index.class, "right");
+
+        final Node node;
+        final Index down;
+        private volatile Index right;
+
+        Index(Node node, Index down) {
+            this.node = node;
+            this.down = down;
+        }
+
+        Index getRight() {
+            return right;
+        }
+
+        void setRight(Index newRight) {
+            right = newRight;
+        }
+
+        boolean compareAndSetRight(Index expectedRight, Index newRight) {
+            return RIGHT.compareAndSet(this, expectedRight, newRight);
+        }
+    }
+}
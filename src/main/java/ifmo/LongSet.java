@@ -0,0 +1,94 @@
+package ifmo;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.ToLongFunction;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/*
+Set of `long` keys with primitive operations, the boxed ones delegate to them.
+Snapshots are read through `PrimitiveIterator.OfLong`, so counting and streaming them does not box the keys
+ */
+interface LongSet extends Set<Long> {
+    boolean add(long key);
+
+    boolean remove(long key);
+
+    boolean contains(long key);
+
+    @Override
+    PrimitiveIterator.OfLong iterator();
+
+    @Override
+    default boolean add(Long value) {
+        return add(value.longValue());
+    }
+
+    @Override
+    default boolean remove(Long value) {
+        return remove(value.longValue());
+    }
+
+    @Override
+    default boolean contains(Long value) {
+        return contains(value.longValue());
+    }
+
+    @Override
+    default long size() {
+        final PrimitiveIterator.OfLong iterator = iterator();
+        long size = 0;
+        while (iterator.hasNext()) {
+            iterator.nextLong();
+            size++;
+        }
+        return size;
+    }
+
+    /*
+    Spliterator over the keys of one snapshot, copied into an array
+     */
+    @Override
+    default Spliterator.OfLong spliterator() {
+        final PrimitiveIterator.OfLong iterator = iterator();
+        long[] keys = new long[16];
+        int size = 0;
+        while (iterator.hasNext()) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            keys[size++] = iterator.nextLong();
+        }
+        return Spliterators.spliterator(keys, 0, size, Spliterator.ORDERED | Spliterator.SORTED
+                | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    default LongStream longStream() {
+        return StreamSupport.longStream(spliterator(), false);
+    }
+
+    default LongStream parallelLongStream() {
+        return StreamSupport.longStream(spliterator(), true);
+    }
+
+    /*
+    Iterator over the keys of snapshot nodes
+     */
+    static <N> PrimitiveIterator.OfLong keys(Iterator<N> nodes, ToLongFunction<? super N> key) {
+        return new PrimitiveIterator.OfLong() {
+            @Override
+            public boolean hasNext() {
+                return nodes.hasNext();
+            }
+
+            @Override
+            public long nextLong() {
+                return key.applyAsLong(nodes.next());
+            }
+        };
+    }
+}
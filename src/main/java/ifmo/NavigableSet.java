@@ -0,0 +1,80 @@
+package ifmo;
+
+/**
+ * Lock-Free упорядоченное множество с навигацией по ключам.
+ * @param <T> Тип ключей
+ */
+public interface NavigableSet<T extends Comparable<T>> extends Set<T> {
+    /**
+     * Наименьший ключ множества
+     *
+     * Алгоритм должен быть как минимум lock-free
+     *
+     * @return наименьший ключ
+     * @throws java.util.NoSuchElementException если множество пусто
+     */
+    T first();
+
+    /**
+     * Наибольший ключ множества
+     *
+     * Алгоритм должен быть как минимум lock-free
+     *
+     * @return наибольший ключ
+     * @throws java.util.NoSuchElementException если множество пусто
+     */
+    T last();
+
+    /**
+     * Наименьший ключ, больший либо равный value
+     *
+     * Алгоритм должен быть как минимум lock-free
+     *
+     * @param value значение ключа
+     * @return найденный ключ или null если такого ключа нет
+     */
+    T ceiling(T value);
+
+    /**
+     * Наибольший ключ, меньший либо равный value
+     *
+     * Алгоритм должен быть как минимум lock-free
+     *
+     * @param value значение ключа
+     * @return найденный ключ или null если такого ключа нет
+     */
+    T floor(T value);
+
+    /**
+     * Наименьший ключ, строго больший value
+     *
+     * Алгоритм должен быть как минимум lock-free
+     *
+     * @param value значение ключа
+     * @return найденный ключ или null если такого ключа нет
+     */
+    T higher(T value);
+
+    /**
+     * Наибольший ключ, строго меньший value
+     *
+     * Алгоритм должен быть как минимум lock-free
+     *
+     * @param value значение ключа
+     * @return найденный ключ или null если такого ключа нет
+     */
+    T lower(T value);
+
+    /**
+     * Представление части множества с ключами из полуинтервала [from, to)
+     *
+     * Изменения представления видны в множестве и наоборот.
+     * Итератор представления строит снимок только этого полуинтервала
+     *
+     * @param from нижняя граница, включительно
+     * @param to верхняя граница, не включительно
+     * @return представление части множества
+     * @throws IllegalArgumentException если from больше to или границы выходят за пределы представления
+     */
+    NavigableSet<T> subSet(T from, T to);
+}
@@ -0,0 +1,127 @@
+package ifmo;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+Native memory for fixed-size records addressed by their numbers.
+Records are allocated from chunks that double in size, chunk k holds records
+[FIRST_CHUNK * (2^k - 1), FIRST_CHUNK * (2^(k+1) - 1)), so a number is translated to an address without locking.
+Chunks are allocated on demand, zeroed, and are freed only by `close`.
+Records returned by `free` are kept in a Treiber stack linked through their first word and are reused first.
+The top of the stack is tagged with a counter of its changes to avoid ABA
+ */
+final class OffHeapArena implements AutoCloseable {
+    static final Unsafe UNSAFE = unsafe();
+
+    private static final int FIRST_CHUNK_SHIFT = 10;
+    private static final int CHUNKS = 64 - FIRST_CHUNK_SHIFT;
+    private static final int RECORD_BITS = 40;
+    private static final long RECORD_MASK = (1L << RECORD_BITS) - 1;
+
+    private final int recordSize;
+    private final AtomicLongArray chunks = new AtomicLongArray(CHUNKS);
+    private final AtomicLong allocated = new AtomicLong();
+
+    /*
+    Tag in the upper bits, number of the top free record plus one in the lower `RECORD_BITS` bits
+     */
+    private final AtomicLong freeTop = new AtomicLong();
+
+    OffHeapArena(int recordSize) {
+        this.recordSize = recordSize;
+    }
+
+    /*
+    Returns the number of a record. A new record is zeroed,
+    a reused one keeps the content it had when it was freed except for the first word
+     */
+    long allocate() {
+        while (true) {
+            final long top = freeTop.get();
+            if ((top & RECORD_MASK) == 0) {
+                break;
+            }
+            final long record = (top & RECORD_MASK) - 1;
+            final long next = UNSAFE.getLongVolatile(null, address(record));
+            if (freeTop.compareAndSet(top, tagged(top, next))) {
+                return record;
+            }
+        }
+        final long record = allocated.getAndIncrement();
+        if (record > RECORD_MASK - 1) {
+            throw new OutOfMemoryError("Off-heap arena is full");
+        }
+        final int chunk = chunk(record);
+        if (chunks.get(chunk) == 0) {
+            final long size = ((long) recordSize << FIRST_CHUNK_SHIFT) << chunk;
+            final long memory = UNSAFE.allocateMemory(size);
+            UNSAFE.setMemory(memory, size, (byte) 0);
+            if (!chunks.compareAndSet(chunk, 0, memory)) {
+                UNSAFE.freeMemory(memory);
+            }
+        }
+        return record;
+    }
+
+    /*
+    Returns the record for reuse. Its first word is overwritten, the rest of its content is kept
+     */
+    void free(long record) {
+        final long address = address(record);
+        while (true) {
+            final long top = freeTop.get();
+            UNSAFE.putLongVolatile(null, address, top & RECORD_MASK);
+            if (freeTop.compareAndSet(top, tagged(top, record + 1))) {
+                return;
+            }
+        }
+    }
+
+    long address(long record) {
+        final long position = record + (1L << FIRST_CHUNK_SHIFT);
+        final int chunk = chunk(record);
+        return chunks.get(chunk) + (position - Long.highestOneBit(position)) * recordSize;
+    }
+
+    /*
+    Number of records taken from the chunks so far, reused records are not counted
+     */
+    long allocated() {
+        return allocated.get();
+    }
+
+    /*
+    Frees the memory of all records. The arena must not be used after that
+     */
+    @Override
+    public void close() {
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            final long memory = chunks.getAndSet(chunk, 0);
+            if (memory != 0) {
+                UNSAFE.freeMemory(memory);
+            }
+        }
+    }
+
+    private static long tagged(long top, long link) {
+        return (top & ~RECORD_MASK) + (1L << RECORD_BITS) | link;
+    }
+
+    private static int chunk(long record) {
+        return 63 - Long.numberOfLeadingZeros(record + (1L << FIRST_CHUNK_SHIFT)) - FIRST_CHUNK_SHIFT;
+    }
+
+    private static Unsafe unsafe() {
+        try {
+            final Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
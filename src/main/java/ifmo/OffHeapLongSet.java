@@ -0,0 +1,505 @@
+package ifmo;
+
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+import static ifmo.OffHeapArena.UNSAFE;
+
+/*
+ Lock-free set of `long` keys with the list nodes stored off-heap.
+ Same algorithm as `LongConcurrentSet`, but a node is a 24-byte record of an `OffHeapArena`:
+ the number of the next node shifted left by one with the deletion mark in the lowest bit, the key
+ and the generation of the record. The mark and the reference are changed together by a single CAS on that word.
+ Unlinked nodes are retired by the thread whose CAS has unlinked them and recycled by an `EpochReclaimer`,
+ the generation is incremented on every recycling. Index entries and snapshot entries identify a node
+ by its number and generation, so they never confuse it with a later use of the same record.
+ Only the sparse index towers stay on the heap. Native memory is released by `close`.
+ Operations started after it throw `IllegalStateException`, but the check on entry does not wait
+ for operations in progress, so the set must not be used concurrently with `close`.
+ */
+final class OffHeapLongSet implements LongSet, AutoCloseable {
+    private static final int NODE_SIZE = 24;
+    private static final int KEY_OFFSET = 8;
+    private static final int GENERATION_OFFSET = 16;
+    private static final long MARK = 1;
+    private static final long NONE = -1;
+
+    private final OffHeapArena arena = new OffHeapArena(NODE_SIZE);
+    private final EpochReclaimer reclaimer = new EpochReclaimer(this::recycle);
+    private final long tail = newNode(0, 0);
+    private final long head = newNode(0, tail);
+    private final AtomicReference<SnapCollector<Entry>> snapCollectorHolder = new AtomicReference<>(new SnapCollector<>(false));
+    private final Index[] heads = IndexLevels.heads(down -> new Index(head, Long.MIN_VALUE, 0, down));
+    private final AtomicInteger indexLevel = new AtomicInteger();
+    private final LongAdder count = new LongAdder();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    @Override
+    public boolean add(long key) {
+        checkOpen();
+        reclaimer.enter();
+        try {
+            return addInside(key);
+        } finally {
+            reclaimer.exit();
+        }
+    }
+
+    @Override
+    public boolean remove(long key) {
+        checkOpen();
+        reclaimer.enter();
+        try {
+            return removeInside(key);
+        } finally {
+            reclaimer.exit();
+        }
+    }
+
+    @Override
+    public boolean contains(long key) {
+        checkOpen();
+        reclaimer.enter();
+        try {
+            return containsInside(key);
+        } finally {
+            reclaimer.exit();
+        }
+    }
+
+    private boolean addInside(long key) {
+        long nodeToInsert = NONE;
+        while (true) {
+            final Place place = find(key);
+            final long pred = place.pred;
+            final long curr = place.curr;
+            if (curr != tail && key(curr) == key) {
+                reportInsert(curr);
+                if (nodeToInsert != NONE) {
+                    recycle(nodeToInsert);
+                }
+                return false;
+            }
+            // A node that has not been published yet is reused by the next attempt
+            if (nodeToInsert == NONE) {
+                nodeToInsert = newNode(key, curr);
+            } else {
+                setNext(nodeToInsert, curr);
+            }
+            if (compareAndSetNext(pred, curr, nodeToInsert)) {
+                count.increment();
+                reportInsert(nodeToInsert);
+                buildIndex(nodeToInsert, key);
+                return true;
+            }
+        }
+    }
+
+    private boolean removeInside(long key) {
+        while (true) {
+            final Place place = find(key);
+            final long pred = place.pred;
+            final long curr = place.curr;
+            if (curr == tail || key(curr) != key) {
+                return false;
+            }
+            // `curr` is not tail
+            final long succ = getNext(curr);
+            if (markDeleted(curr, succ)) {
+                count.decrement();
+                reportDelete(curr);
+                // Try remove physically
+                if (compareAndSetNext(pred, curr, succ)) {
+                    reclaimer.retire(curr);
+                }
+                return true;
+            }
+        }
+    }
+
+    private boolean containsInside(long key) {
+        long curr = getNext(findPredecessor(key, false));
+        while (curr != tail) {
+            if (isDeleted(curr)) {
+                if (key(curr) == key) {
+                    reportDelete(curr);
+                }
+                curr = getNext(curr);
+            } else if (key(curr) == key) {
+                reportInsert(curr);
+                return true;
+            } else if (key(curr) > key) {
+                return false;
+            } else {
+                curr = getNext(curr);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        checkOpen();
+        reclaimer.enter();
+        try {
+            final long first = firstNode();
+            if (first == tail) {
+                return true;
+            }
+            reportInsert(first);
+            return false;
+        } finally {
+            reclaimer.exit();
+        }
+    }
+
+    /*
+    Snapshot entries carry the keys, so the iterator does not read the nodes after the snapshot is collected
+     */
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        checkOpen();
+        final SnapCollector<Entry> collector = SnapCollector.acquire(snapCollectorHolder);
+        reclaimer.enter();
+        try {
+            collectSnapshot(collector);
+        } finally {
+            reclaimer.exit();
+        }
+        return LongSet.keys(collector.iterator((a, b) -> Long.compare(a.key, b.key)), node -> node.key);
+    }
+
+    @Override
+    public long estimatedSize() {
+        return Math.max(0, count.sum());
+    }
+
+    /*
+    Recycles the retired nodes and frees the native memory of the nodes, repeated calls do nothing
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            reclaimer.drain();
+            arena.close();
+        }
+    }
+
+    /*
+    Number of records taken from the native memory, recycled nodes are not counted
+     */
+    long allocatedNodes() {
+        return arena.allocated();
+    }
+
+    private void checkOpen() {
+        if (closed.get()) {
+            throw new IllegalStateException("Set is closed");
+        }
+    }
+
+    private void reportDelete(long node) {
+        final SnapCollector<Entry> collector = snapCollectorHolder.get();
+        if (collector.isActive()) {
+            collector.addReport(new Report<>(entry(node), Report.ReportType.DELETED));
+        }
+    }
+
+    private void reportInsert(long node) {
+        final SnapCollector<Entry> collector = snapCollectorHolder.get();
+        if (collector.isActive() && !isDeleted(node)) {
+            collector.addReport(new Report<>(entry(node), Report.ReportType.INSERTED));
+        }
+    }
+
+    private void collectSnapshot(SnapCollector<Entry> collector) {
+        long curr = getNext(head);
+        while (collector.isActive()) {
+            if (curr != tail && !isDeleted(curr)) {
+                collector.addNode(entry(curr));
+            }
+            if (curr == tail) {
+                collector.blockFurtherNodes();
+                collector.deactivate();
+                break;
+            }
+            curr = getNext(curr);
+        }
+        collector.blockFurtherReports();
+    }
+
+    /*
+    Returns the first node that was not deleted when it followed head, or tail.
+    Deleted nodes in front of it are unlinked
+     */
+    private long firstNode() {
+        while (true) {
+            final long first = getNext(head);
+            if (first == tail || !isDeleted(first)) {
+                return first;
+            }
+            reportDelete(first);
+            if (compareAndSetNext(head, first, getNext(first))) {
+                reclaimer.retire(first);
+            }
+        }
+    }
+
+    /*
+    Returns the first node with a key not less than `key` and its predecessor.
+    Deleted nodes on the way are unlinked and reported, live nodes are reported by the callers
+     */
+    private Place find(long key) {
+        while (true) {
+            long pred = findPredecessor(key, true);
+            long curr = getNext(pred);
+            boolean continueOuterLoop = false;
+            while (curr != tail) {
+                final long next = next(curr);
+                final long succ = next >>> 1;
+                if ((next & MARK) != 0) {
+                    reportDelete(curr);
+                    // Try remove physically
+                    if (compareAndSetNext(pred, curr, succ)) {
+                        reclaimer.retire(curr);
+                        curr = succ;
+                    } else {
+                        continueOuterLoop = true;
+                        break;
+                    }
+                } else {
+                    if (key(curr) >= key) {
+                        break;
+                    } else {
+                        pred = curr;
+                        curr = succ;
+                    }
+                }
+            }
+            if (continueOuterLoop) {
+                continue;
+            }
+            return new Place(pred, curr);
+        }
+    }
+
+    /*
+    Returns head or a node with a smaller key that was not deleted when the index was traversed
+     */
+    private long findPredecessor(long key, boolean unlink) {
+        return searchIndex(key, 0, unlink).node;
+    }
+
+    /*
+    Descends the index down to `level` and returns the rightmost index entry with a smaller key.
+    Entries of deleted or recycled nodes are unlinked on the way if `unlink` is set,
+    `containsInside` steps over them without writes
+     */
+    private Index searchIndex(long key, int level, boolean unlink) {
+        int currentLevel = Math.max(indexLevel.get(), level);
+        Index q = heads[currentLevel];
+        while (true) {
+            Index r = q.getRight();
+            while (r != null && !isLive(r.node, r.generation)) {
+                if (unlink) {
+                    q.compareAndSetRight(r, r.getRight());
+                    r = q.getRight();
+                } else {
+                    r = r.getRight();
+                }
+            }
+            if (r != null && r.key < key) {
+                q = r;
+                continue;
+            }
+            if (currentLevel == level) {
+                return q;
+            }
+            q = q.down;
+            currentLevel--;
+        }
+    }
+
+    private void buildIndex(long node, long key) {
+        final int levels = IndexLevels.randomLevel();
+        final long generation = generation(node);
+        Index down = null;
+        for (int level = 0; level < levels; level++) {
+            final Index index = new Index(node, key, generation, down);
+            if (!linkIndex(index, level)) {
+                return;
+            }
+            down = index;
+        }
+        int current = indexLevel.get();
+        while (current < levels - 1 && !indexLevel.compareAndSet(current, levels - 1)) {
+            current = indexLevel.get();
+        }
+    }
+
+    private boolean linkIndex(Index index, int level) {
+        while (isLive(index.node, index.generation)) {
+            final Index pred = searchIndex(index.key, level, true);
+            final Index succ = pred.getRight();
+            index.setRight(succ);
+            if (pred.compareAndSetRight(succ, index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long newNode(long key, long next) {
+        final long node = arena.allocate();
+        final long address = arena.address(node);
+        UNSAFE.putLong(address + KEY_OFFSET, key);
+        setNext(node, next);
+        return node;
+    }
+
+    /*
+    Sets the successor of a node that is not reachable yet
+     */
+    private void setNext(long node, long next) {
+        UNSAFE.putLongVolatile(null, arena.address(node), next << 1);
+    }
+
+    /*
+    Returns the record of an unlinked or never published node to the arena
+     */
+    private void recycle(long node) {
+        final long address = arena.address(node) + GENERATION_OFFSET;
+        UNSAFE.putLongVolatile(null, address, UNSAFE.getLong(address) + 1);
+        arena.free(node);
+    }
+
+    private long key(long node) {
+        return UNSAFE.getLong(arena.address(node) + KEY_OFFSET);
+    }
+
+    private long generation(long node) {
+        return UNSAFE.getLongVolatile(null, arena.address(node) + GENERATION_OFFSET);
+    }
+
+    /*
+    Checks that the record still holds the node of `generation` and the node is not deleted.
+    The generation is read around the next word, so a recycling in between is noticed
+     */
+    private boolean isLive(long node, long generation) {
+        final long before = generation(node);
+        final long next = next(node);
+        return before == generation && generation(node) == generation && (next & MARK) == 0;
+    }
+
+    private Entry entry(long node) {
+        return new Entry(node, generation(node), key(node));
+    }
+
+    /*
+    Next word of the node: the number of the successor shifted left by one, with the deletion mark
+     */
+    private long next(long node) {
+        return UNSAFE.getLongVolatile(null, arena.address(node));
+    }
+
+    private long getNext(long node) {
+        return next(node) >>> 1;
+    }
+
+    private boolean isDeleted(long node) {
+        return (next(node) & MARK) != 0;
+    }
+
+    private boolean compareAndSetNext(long node, long expectedNext, long newNext) {
+        return UNSAFE.compareAndSwapLong(null, arena.address(node), expectedNext << 1, newNext << 1);
+    }
+
+    /*
+    Logically deletes the node if its successor is still `expectedNext`
+     */
+    private boolean markDeleted(long node, long expectedNext) {
+        return UNSAFE.compareAndSwapLong(null, arena.address(node), expectedNext << 1, expectedNext << 1 | MARK);
+    }
+
+    /*
+    Node of a snapshot: the record number and generation identify it, the key is copied
+     */
+    private static final class Entry {
+        final long node;
+        final long generation;
+        final long key;
+
+        Entry(long node, long generation, long key) {
+            this.node = node;
+            this.generation = generation;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            final Entry other = (Entry) o;
+            return node == other.node && generation == other.generation;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(node * 31 + generation);
+        }
+    }
+
+    /*
+    Result of `find`: adjacent nodes around the searched key
+     */
+    private static final class Place {
+        final long pred;
+        final long curr;
+
+        Place(long pred, long curr) {
+            this.pred = pred;
+            this.curr = curr;
+        }
+    }
+
+    /*
+    Index entry: refers to a node of the list and keeps a copy of its key and the generation of its record
+     */
+    private static final class Index {
+        private static final AtomicReferenceFieldUpdater<Index, Index> RIGHT =
+                AtomicReferenceFieldUpdater.newUpdater(Index.class, Index.class, "right");
+
+        final long node;
+        final long key;
+        final long generation;
+        final Index down;
+        private volatile Index right;
+
+        Index(long node, long key, long generation, Index down) {
+            this.node = node;
+            this.key = key;
+            this.generation = generation;
+            this.down = down;
+        }
+
+        Index getRight() {
+            return right;
+        }
+
+        void setRight(Index newRight) {
+            right = newRight;
+        }
+
+        boolean compareAndSetRight(Index expectedRight, Index newRight) {
+            return RIGHT.compareAndSet(this, expectedRight, newRight);
+        }
+    }
+}
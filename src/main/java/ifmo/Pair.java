@@ -0,0 +1,16 @@
+package ifmo;
+
+/*
+Pair
+ */
+final class Pair<V> {
+
+    final V first;
+
+    final V second;
+
+    Pair(V first, V second) {
+        this.first = first;
+        this.second = second;
+    }
+}
@@ -0,0 +1,19 @@
+package ifmo;
+
+/*
+Report about a node inserted or deleted while a snapshot is being collected
+ */
+final class Report<N> {
+    final N value;
+    final ReportType type;
+
+    Report(N value, ReportType type) {
+        this.value = value;
+        this.type = type;
+    }
+
+    enum ReportType {
+        INSERTED,
+        DELETED
+    }
+}
@@ -0,0 +1,196 @@
+package ifmo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/*
+Append-only collection of array segments.
+Writers claim slots with `getAndIncrement` on the segment cursor and then publish the value into the slot,
+so an addition allocates nothing but the occasional new segment.
+Blocking seals the cursor of the last segment and closes the chain. A claimed slot that is still empty
+when the content is read is filled with a tombstone, and the writer that claimed it fails
+ */
+public final class SegmentedCollection<T> implements Collection<T> {
+    private static final int FIRST_SEGMENT_SIZE = 16;
+    private static final int MAX_SEGMENT_SIZE = 1024;
+    private static final int SEALED = 1 << 30;
+    private static final Object TOMBSTONE = new Object();
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<SegmentedCollection, Segment> TAIL =
+            AtomicReferenceFieldUpdater.newUpdater(SegmentedCollection.class, Segment.class, "tail");
+
+    private final Segment first = new Segment(FIRST_SEGMENT_SIZE);
+    private final ContentionPolicy contention;
+    private volatile Segment tail = first;
+    private volatile boolean blocked;
+
+    public SegmentedCollection() {
+        this(ContentionPolicy.NONE);
+    }
+
+    /*
+    Collection whose writers back off by `contention` after losing the race to extend the chain,
+    and whose blocking backs off while writers keep claiming slots
+     */
+    public SegmentedCollection(ContentionPolicy contention) {
+        this.contention = contention;
+    }
+
+    @Override
+    public boolean add(T value) {
+        int failures = 0;
+        while (true) {
+            final Segment segment = tail;
+            final int claim = segment.claim();
+            if ((claim & SEALED) != 0) {
+                break;
+            }
+            if (claim < segment.size()) {
+                if (segment.publish(claim, value)) {
+                    return true;
+                }
+                break;
+            }
+            final Segment next = segment.append();
+            if (next == Segment.CLOSED) {
+                break;
+            }
+            if (!TAIL.compareAndSet(this, segment, next)) {
+                contention.backoff(++failures);
+            }
+        }
+        // The collection is being blocked, complete it before reporting the failure
+        blockFurtherAdd();
+        return false;
+    }
+
+    @Override
+    public void blockFurtherAdd() {
+        Segment segment = tail;
+        while (true) {
+            segment.seal(contention);
+            final Segment next = segment.close();
+            if (next == Segment.CLOSED) {
+                break;
+            }
+            // A full segment has been extended before it was sealed
+            segment = next;
+        }
+        blocked = true;
+    }
+
+    @Override
+    public boolean isBlocked() {
+        return blocked;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<T> content() {
+        if (!isBlocked()) {
+            throw new IllegalStateException();
+        }
+        final List<T> content = new ArrayList<>();
+        Segment segment = first;
+        while (segment != Segment.CLOSED) {
+            final int claimed = Math.min(segment.claimed(), segment.size());
+            for (int i = 0; i < claimed; i++) {
+                final Object value = segment.settle(i);
+                if (value != TOMBSTONE) {
+                    content.add((T) value);
+                }
+            }
+            segment = segment.next;
+        }
+        return content;
+    }
+
+    /*
+    Fixed-size array of slots, the next segment is twice as large up to `MAX_SEGMENT_SIZE`
+     */
+    private static final class Segment {
+        private static final AtomicIntegerFieldUpdater<Segment> CURSOR =
+                AtomicIntegerFieldUpdater.newUpdater(Segment.class, "cursor");
+        private static final AtomicReferenceFieldUpdater<Segment, Segment> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Segment.class, Segment.class, "next");
+
+        /*
+        Successor of the last segment of a blocked collection
+         */
+        static final Segment CLOSED = new Segment(0);
+
+        private final AtomicReferenceArray<Object> slots;
+
+        /*
+        Number of claimed slots, has the `SEALED` bit once no more slots can be claimed
+         */
+        private volatile int cursor;
+        private volatile Segment next;
+
+        Segment(int size) {
+            this.slots = new AtomicReferenceArray<>(size);
+        }
+
+        int size() {
+            return slots.length();
+        }
+
+        int claim() {
+            return CURSOR.getAndIncrement(this);
+        }
+
+        int claimed() {
+            return cursor & (SEALED - 1);
+        }
+
+        /*
+        The CAS competes with the claims of writers, `contention` is applied after each failure
+         */
+        void seal(ContentionPolicy contention) {
+            int failures = 0;
+            while (true) {
+                final int current = cursor;
+                if ((current & SEALED) != 0 || CURSOR.compareAndSet(this, current, current | SEALED)) {
+                    return;
+                }
+                contention.backoff(++failures);
+            }
+        }
+
+        boolean publish(int index, Object value) {
+            return slots.compareAndSet(index, null, value);
+        }
+
+        /*
+        Returns the value of the slot, a slot that has not been published yet becomes a tombstone
+         */
+        Object settle(int index) {
+            if (slots.get(index) == null) {
+                slots.compareAndSet(index, null, TOMBSTONE);
+            }
+            return slots.get(index);
+        }
+
+        /*
+        Returns the next segment, creating it if there is none
+         */
+        Segment append() {
+            if (next == null) {
+                NEXT.compareAndSet(this, null, new Segment(Math.min(size() * 2, MAX_SEGMENT_SIZE)));
+            }
+            return next;
+        }
+
+        /*
+        Returns `CLOSED` if the segment is the last one, otherwise the segment appended before
+         */
+        Segment close() {
+            NEXT.compareAndSet(this, null, CLOSED);
+            return next;
+        }
+    }
+}
@@ -47,10 +47,159 @@ public interface Set<T extends Comparable<T>> {
      */
     boolean isEmpty();
 
+    /**
+     * Количество ключей в множестве
+     *
+     * Линеаризуемо: ключи считаются по снимку, как для {@link #iterator}, но без построения коллекции
+     *
+     * @return количество ключей
+     */
+    default long size() {
+        long size = 0;
+        final java.util.Iterator<T> iterator = iterator();
+        while (iterator.hasNext()) {
+            iterator.next();
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Приблизительное количество ключей в множестве
+     *
+     * Не линеаризуемо: при параллельных изменениях результат может не совпадать ни с одним состоянием множества.
+     * Реализации возвращают значение счетчиков, которые обновляются операциями добавления и удаления,
+     * за время, не зависящее от размера множества: разность числа добавлений и удалений.
+     * Счетчики читаются не атомарно, поэтому при параллельных изменениях сумма может отличаться от размера
+     * множества; отрицательная сумма заменяется нулем
+     *
+     * @return приблизительное количество ключей
+     */
+    default long estimatedSize() {
+        return size();
+    }
+
+    /**
+     * Добавить ключи к множеству
+     *
+     * Ключи передаются в порядке возрастания, тогда реализация может обработать их за один проход по множеству.
+     * Операция не атомарна: каждый ключ добавляется как отдельный вызов {@link #add}
+     *
+     * @param values ключи в порядке возрастания
+     * @return true если хотя бы один ключ был добавлен
+     */
+    default boolean addAll(Iterable<? extends T> values) {
+        boolean changed = false;
+        for (T value : values) {
+            changed |= add(value);
+        }
+        return changed;
+    }
+
+    /**
+     * Удалить ключи из множества
+     *
+     * Ключи передаются в порядке возрастания, тогда реализация может обработать их за один проход по множеству.
+     * Операция не атомарна: каждый ключ удаляется как отдельный вызов {@link #remove}
+     *
+     * @param values ключи в порядке возрастания
+     * @return true если хотя бы один ключ был удален
+     */
+    default boolean removeAll(Iterable<? extends T> values) {
+        boolean changed = false;
+        for (T value : values) {
+            changed |= remove(value);
+        }
+        return changed;
+    }
+
+    /**
+     * Проверка наличия всех ключей в множестве
+     *
+     * Ключи передаются в порядке возрастания, тогда реализация может обработать их за один проход по множеству.
+     * Операция не атомарна: каждый ключ проверяется как отдельный вызов {@link #contains}
+     *
+     * @param values ключи в порядке возрастания
+     * @return true если все ключи содержатся в множестве, иначе - false
+     */
+    default boolean containsAll(Iterable<? extends T> values) {
+        for (T value : values) {
+            if (!contains(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Оставить в множестве только переданные ключи
+     *
+     * Ключи передаются в строго возрастающем порядке.
+     * Операция не атомарна: каждый лишний ключ удаляется как отдельный вызов {@link #remove}
+     *
+     * @param values ключи в строго возрастающем порядке
+     * @return true если хотя бы один ключ был удален
+     * @throws IllegalArgumentException если ключи не упорядочены
+     */
+    default boolean retainAll(Iterable<? extends T> values) {
+        final java.util.Set<T> retained = new java.util.TreeSet<>();
+        T previous = null;
+        for (T value : values) {
+            if (previous != null && previous.compareTo(value) >= 0) {
+                throw new IllegalArgumentException("Values are not sorted");
+            }
+            retained.add(value);
+            previous = value;
+        }
+        boolean changed = false;
+        final java.util.Iterator<T> iterator = iterator();
+        while (iterator.hasNext()) {
+            final T value = iterator.next();
+            if (!retained.contains(value)) {
+                changed |= remove(value);
+            }
+        }
+        return changed;
+    }
+
     /**
      * Возвращает lock-free итератор для множества
      *
      * @return новый экземпляр итератор для множества
      */
     java.util.Iterator<T> iterator();
+
+    /**
+     * Возвращает сплитератор по снимку множества
+     *
+     * Снимок берется один раз, как для {@link #iterator}, и делится на равные части.
+     * Характеристики: ORDERED, SORTED, DISTINCT, SIZED, SUBSIZED, NONNULL, IMMUTABLE
+     *
+     * @return новый сплитератор по ключам снимка в порядке возрастания
+     */
+    default java.util.Spliterator<T> spliterator() {
+        final java.util.List<T> snapshot = new java.util.ArrayList<>();
+        iterator().forEachRemaining(snapshot::add);
+        return java.util.Spliterators.spliterator(snapshot.toArray(),
+                java.util.Spliterator.ORDERED | java.util.Spliterator.SORTED | java.util.Spliterator.DISTINCT
+                        | java.util.Spliterator.NONNULL | java.util.Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * Последовательный поток ключей снимка множества
+     *
+     * @return поток ключей в порядке возрастания
+     */
+    default java.util.stream.Stream<T> stream() {
+        return java.util.stream.StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Параллельный поток ключей снимка множества
+     *
+     * @return поток ключей, снимок делится между потоками fork-join пула
+     */
+    default java.util.stream.Stream<T> parallelStream() {
+        return java.util.stream.StreamSupport.stream(spliterator(), true);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package ifmo;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+Union, intersection and difference of two sets in one merge pass over their snapshots.
+Both snapshots are taken when the operation is called, each of them is linearizable on its own.
+The result is produced lazily in ascending order, so `ConcurrentSet.ofSorted` builds a set of it in linked order
+ */
+final class SetAlgebra {
+
+    private SetAlgebra() {
+    }
+
+    static <T extends Comparable<T>> Iterator<T> union(Set<T> first, Set<T> second) {
+        return new Merge<>(first.iterator(), second.iterator(), true, true, true);
+    }
+
+    static <T extends Comparable<T>> Iterator<T> intersection(Set<T> first, Set<T> second) {
+        return new Merge<>(first.iterator(), second.iterator(), false, false, true);
+    }
+
+    /*
+    Values of `first` that are not in `second`
+     */
+    static <T extends Comparable<T>> Iterator<T> difference(Set<T> first, Set<T> second) {
+        return new Merge<>(first.iterator(), second.iterator(), true, false, false);
+    }
+
+    /*
+    Merge of two ascending iterators that returns the values found only in the first one, only in the second one
+    or in both of them, as selected by the flags
+     */
+    private static final class Merge<T extends Comparable<T>> implements Iterator<T> {
+        private final Iterator<T> first;
+        private final Iterator<T> second;
+        private final boolean onlyFirst;
+        private final boolean onlySecond;
+        private final boolean both;
+        private T firstHead;
+        private T secondHead;
+        private T next;
+
+        Merge(Iterator<T> first, Iterator<T> second, boolean onlyFirst, boolean onlySecond, boolean both) {
+            this.first = first;
+            this.second = second;
+            this.onlyFirst = onlyFirst;
+            this.onlySecond = onlySecond;
+            this.both = both;
+            firstHead = first.hasNext() ? first.next() : null;
+            secondHead = second.hasNext() ? second.next() : null;
+            next = advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            final T result = next;
+            if (result == null) {
+                throw new NoSuchElementException();
+            }
+            next = advance();
+            return result;
+        }
+
+        private T advance() {
+            while (true) {
+                // The rest of one iterator is skipped if nothing can be taken from it
+                if (firstHead == null && (secondHead == null || !onlySecond)
+                        || secondHead == null && !onlyFirst) {
+                    return null;
+                }
+                final int cmpResult = firstHead == null ? 1 : secondHead == null ? -1 : firstHead.compareTo(secondHead);
+                final T value = cmpResult <= 0 ? firstHead : secondHead;
+                if (cmpResult <= 0) {
+                    firstHead = first.hasNext() ? first.next() : null;
+                }
+                if (cmpResult >= 0) {
+                    secondHead = second.hasNext() ? second.next() : null;
+                }
+                if (cmpResult < 0 ? onlyFirst : cmpResult > 0 ? onlySecond : both) {
+                    return value;
+                }
+            }
+        }
+    }
+}
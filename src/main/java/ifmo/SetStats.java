@@ -0,0 +1,138 @@
+package ifmo;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Striped counters of an instrumented set.
+Sets without instrumentation do not create them, so their hot paths only check a null field
+ */
+final class SetStats implements SetStatsMXBean {
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder casFailures = new LongAdder();
+    private final LongAdder restarts = new LongAdder();
+    private final LongAdder traversedNodes = new LongAdder();
+    private final LongAdder helperUnlinks = new LongAdder();
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder snapshotNanos = new LongAdder();
+    private final LongAdder snapshotReports = new LongAdder();
+
+    void operation() {
+        operations.increment();
+    }
+
+    void casFailure() {
+        casFailures.increment();
+    }
+
+    /*
+    A failed CAS that makes the operation start over
+     */
+    void restart() {
+        casFailures.increment();
+        restarts.increment();
+    }
+
+    void traversed(int nodes) {
+        traversedNodes.add(nodes);
+    }
+
+    void helperUnlink() {
+        helperUnlinks.increment();
+    }
+
+    void snapshot(long nanos, long reports) {
+        snapshots.increment();
+        snapshotNanos.add(nanos);
+        snapshotReports.add(reports);
+    }
+
+    @Override
+    public long getOperations() {
+        return operations.sum();
+    }
+
+    @Override
+    public long getCasFailures() {
+        return casFailures.sum();
+    }
+
+    @Override
+    public long getRestarts() {
+        return restarts.sum();
+    }
+
+    @Override
+    public double getAverageTraversal() {
+        return average(traversedNodes, operations);
+    }
+
+    @Override
+    public long getHelperUnlinks() {
+        return helperUnlinks.sum();
+    }
+
+    @Override
+    public long getSnapshots() {
+        return snapshots.sum();
+    }
+
+    @Override
+    public double getAverageSnapshotNanos() {
+        return average(snapshotNanos, snapshots);
+    }
+
+    @Override
+    public double getAverageSnapshotReports() {
+        return average(snapshotReports, snapshots);
+    }
+
+    @Override
+    public void reset() {
+        operations.reset();
+        casFailures.reset();
+        restarts.reset();
+        traversedNodes.reset();
+        helperUnlinks.reset();
+        snapshots.reset();
+        snapshotNanos.reset();
+        snapshotReports.reset();
+    }
+
+    /*
+    Registers the counters in the platform MBean server as `ifmo:type=ConcurrentSet,name=<name>`
+     */
+    ObjectName register(String name) {
+        try {
+            final ObjectName objectName = objectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void unregister(String name) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = objectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ObjectName objectName(String name) throws JMException {
+        return new ObjectName("ifmo:type=ConcurrentSet,name=" + ObjectName.quote(name));
+    }
+
+    private static double average(LongAdder total, LongAdder count) {
+        final long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+}
@@ -0,0 +1,49 @@
+package ifmo;
+
+/*
+Management interface of the statistics of an instrumented set
+ */
+public interface SetStatsMXBean {
+
+    /*
+    Number of add/remove/contains operations and of navigation queries such as `ceiling` or `last`
+     */
+    long getOperations();
+
+    /*
+    Failed CAS attempts in add/remove and in the unlinking of deleted nodes
+     */
+    long getCasFailures();
+
+    /*
+    Retries of add/remove and restarts of searches after a failed CAS
+     */
+    long getRestarts();
+
+    /*
+    Average number of list nodes visited per operation
+     */
+    double getAverageTraversal();
+
+    /*
+    Deleted nodes physically unlinked by operations other than the remove that deleted them
+     */
+    long getHelperUnlinks();
+
+    /*
+    Number of completed snapshots
+     */
+    long getSnapshots();
+
+    /*
+    Average time from the start of a snapshot to its deactivation, in nanoseconds
+     */
+    double getAverageSnapshotNanos();
+
+    /*
+    Average number of reports received by a snapshot
+     */
+    double getAverageSnapshotReports();
+
+    void reset();
+}
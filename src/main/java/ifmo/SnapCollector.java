@@ -0,0 +1,243 @@
+package ifmo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Snapshot collector.
+Reports are appended to per-thread stripes, so that concurrent mutators do not contend on one collection
+ */
+final class SnapCollector<N> {
+    private static final int REPORT_STRIPES = stripeCount(Runtime.getRuntime().availableProcessors());
+
+    private final AtomicReferenceArray<Collection<Report<N>>> reports = new AtomicReferenceArray<>(REPORT_STRIPES);
+    private final Collection<N> nodes;
+    private final AtomicBoolean isActive = new AtomicBoolean(true);
+    private final AtomicInteger participants = new AtomicInteger();
+    private final AtomicReference<List<N>> snapshot = new AtomicReference<>();
+    private final LongAdder insertReports = new LongAdder();
+    private final LongAdder deleteReports = new LongAdder();
+    private final Range<N> range;
+    private final ContentionPolicy contention;
+    private final long startedAt = System.nanoTime();
+
+    SnapCollector(boolean isActive) {
+        this(isActive, null);
+    }
+
+    /*
+    Collector of the nodes in `range`, of all nodes if it is null
+     */
+    SnapCollector(boolean isActive, Range<N> range) {
+        this(isActive, range, ContentionPolicy.NONE);
+    }
+
+    /*
+    Collector whose report stripes back off by `contention`, the stripes are where reporting threads contend
+     */
+    SnapCollector(boolean isActive, Range<N> range, ContentionPolicy contention) {
+        this.isActive.set(isActive);
+        this.range = range;
+        this.contention = contention;
+        this.nodes = new SegmentedCollection<>(contention);
+    }
+
+    /*
+    Joins the active collector of `holder`, or installs a new collector of all nodes and joins it
+     */
+    static <N> SnapCollector<N> acquire(AtomicReference<SnapCollector<N>> holder) {
+        SnapCollector<N> collector = holder.get();
+        if (!collector.isActive()) {
+            holder.compareAndSet(collector, new SnapCollector<>(true));
+            collector = holder.get();
+        }
+        collector.join();
+        return collector;
+    }
+
+    /*
+    Value of `System.nanoTime()` when the collector was created
+     */
+    long startedAt() {
+        return startedAt;
+    }
+
+    Range<N> range() {
+        return range;
+    }
+
+    /*
+    Checks that reports about the node are needed
+     */
+    boolean covers(N node) {
+        return range == null || range.contains(node);
+    }
+
+    /*
+    Checks that the snapshot can be used by an iterator over `other`
+     */
+    boolean covers(Range<N> other) {
+        return range == null || other != null && range.includes(other);
+    }
+
+    /*
+    Returns true only for the call that has actually deactivated the collector
+     */
+    boolean deactivate() {
+        return isActive.compareAndSet(true, false);
+    }
+
+    boolean isActive() {
+        return isActive.get();
+    }
+
+    /*
+    Registers an iterator that is going to use the collector
+     */
+    void join() {
+        participants.incrementAndGet();
+    }
+
+    void addReport(Report<N> report) {
+        final int stripe = stripeIndex();
+        Collection<Report<N>> collection = reports.get(stripe);
+        if (collection == null) {
+            reports.compareAndSet(stripe, null, new SegmentedCollection<>(contention));
+            collection = reports.get(stripe);
+        }
+        if (collection.add(report)) {
+            (report.type == Report.ReportType.INSERTED ? insertReports : deleteReports).increment();
+        }
+    }
+
+    void addNode(N node) {
+        nodes.add(node);
+    }
+
+    void blockFurtherNodes() {
+        nodes.blockFurtherAdd();
+    }
+
+    void blockFurtherReports() {
+        for (int stripe = 0; stripe < REPORT_STRIPES; stripe++) {
+            final Collection<Report<N>> collection = reports.get(stripe);
+            if (collection != null || !reports.compareAndSet(stripe, null, NoReports.instance())) {
+                reports.get(stripe).blockFurtherAdd();
+            }
+        }
+    }
+
+    /*
+    Returns the nodes in the order they were added
+     */
+    List<N> readNodes() {
+        return nodes.content();
+    }
+
+    List<Report<N>> readReports() {
+        final List<Report<N>> content = new ArrayList<>();
+        for (int stripe = 0; stripe < REPORT_STRIPES; stripe++) {
+            content.addAll(reports.get(stripe).content());
+        }
+        return content;
+    }
+
+    /*
+    Returns the nodes of the blocked snapshot in key order.
+    A sole participant merges them lazily. When several iterators share the collector,
+    the first one to finish publishes the merged nodes and the others reuse them
+     */
+    Iterator<N> iterator(Comparator<? super N> order) {
+        final List<N> shared = snapshot.get();
+        if (shared != null) {
+            return shared.iterator();
+        }
+        final Iterator<N> merged = new SnapshotIterator<>(this, order);
+        if (participants.get() <= 1) {
+            return merged;
+        }
+        final List<N> nodes = new ArrayList<>();
+        merged.forEachRemaining(nodes::add);
+        snapshot.compareAndSet(null, Collections.unmodifiableList(nodes));
+        return snapshot.get().iterator();
+    }
+
+    /*
+    Number of insert reports accepted by the collector.
+    Exact once reports are blocked and all concurrent `addReport` calls have returned
+     */
+    long insertReportCount() {
+        return insertReports.sum();
+    }
+
+    /*
+    Number of delete reports accepted by the collector, see `insertReportCount`
+     */
+    long deleteReportCount() {
+        return deleteReports.sum();
+    }
+
+    long reportCount() {
+        return insertReportCount() + deleteReportCount();
+    }
+
+    private static int stripeIndex() {
+        final int hash = (int) Thread.currentThread().getId() * 0x9E3779B9;
+        return (hash ^ hash >>> 16) & (REPORT_STRIPES - 1);
+    }
+
+    /*
+    Power of two not less than `processors`
+     */
+    private static int stripeCount(int processors) {
+        return processors <= 1 ? 1 : Integer.highestOneBit(processors - 1) << 1;
+    }
+
+    /*
+    Blocked empty stripe, shared by all collectors so that blocking allocates nothing for stripes without reports
+     */
+    private static final class NoReports implements Collection<Object> {
+        private static final NoReports INSTANCE = new NoReports();
+
+        @SuppressWarnings("unchecked")
+        static <V> Collection<V> instance() {
+            return (Collection<V>) (Collection<?>) INSTANCE;
+        }
+
+        @Override
+        public boolean add(Object value) {
+            return false;
+        }
+
+        @Override
+        public void blockFurtherAdd() {
+        }
+
+        @Override
+        public boolean isBlocked() {
+            return true;
+        }
+
+        @Override
+        public List<Object> content() {
+            return Collections.emptyList();
+        }
+    }
+
+    /*
+    Interval of keys covered by a snapshot
+     */
+    interface Range<N> {
+        boolean contains(N node);
+
+        boolean includes(Range<N> other);
+    }
+}
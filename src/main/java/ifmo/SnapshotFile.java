@@ -0,0 +1,159 @@
+package ifmo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+Snapshot of a set on disk: a header with the magic number and the number of keys, then the keys in ascending order.
+A snapshot is written from a set iterator, so it is linearizable, and it is read back by one linear pass
+over the file mapped into memory
+ */
+final class SnapshotFile {
+    private static final int MAGIC = 0x4C465331;
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int WINDOW_SIZE = 1 << 28;
+
+    private SnapshotFile() {
+    }
+
+    /*
+    Writes a snapshot of the set to the file and returns the number of keys written
+     */
+    static <T extends Comparable<T>> long write(Set<T> set, Path path, KeyCodec<T> codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.position(HEADER_SIZE);
+            long count = 0;
+            for (T value : (Iterable<T>) set::iterator) {
+                final int size = codec.size(value);
+                if (size > buffer.remaining()) {
+                    flush(channel, buffer);
+                    if (size > buffer.capacity()) {
+                        buffer = ByteBuffer.allocateDirect(size);
+                    }
+                }
+                codec.write(value, buffer);
+                count++;
+            }
+            flush(channel, buffer);
+            buffer.clear();
+            buffer.putInt(MAGIC).putLong(count).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, HEADER_SIZE - buffer.remaining());
+            }
+            channel.force(false);
+            return count;
+        }
+    }
+
+    /*
+    Creates a set of the keys of a snapshot file.
+    Throws `IOException` if the file is not a snapshot or is corrupted
+     */
+    static <T extends Comparable<T>> ConcurrentSet<T> read(Path path, KeyCodec<T> codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final KeyReader<T> reader = new KeyReader<>(channel, codec);
+            final ConcurrentSet<T> set = ConcurrentSet.ofSorted(reader);
+            reader.checkEnd();
+            return set;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupted snapshot " + path, e);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /*
+    Iterator over the keys of a snapshot file. The file is mapped by windows,
+    a key that crosses the end of a window is read again from a window starting at it
+     */
+    private static final class KeyReader<T> implements Iterator<T> {
+        private final FileChannel channel;
+        private final KeyCodec<T> codec;
+        private final long fileSize;
+        private final long count;
+        private long read;
+        private long windowStart;
+        private MappedByteBuffer window;
+
+        KeyReader(FileChannel channel, KeyCodec<T> codec) throws IOException {
+            this.channel = channel;
+            this.codec = codec;
+            this.fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Not a set snapshot");
+            }
+            map(0, WINDOW_SIZE);
+            if (window.getInt() != MAGIC) {
+                throw new IOException("Not a set snapshot");
+            }
+            count = window.getLong();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return read < count;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            while (true) {
+                final int start = window.position();
+                try {
+                    final T value = codec.read(window);
+                    read++;
+                    return value;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (BufferUnderflowException e) {
+                    final long keyStart = windowStart + start;
+                    if (windowStart + window.limit() == fileSize) {
+                        throw new UncheckedIOException(new IOException("Truncated snapshot"));
+                    }
+                    if (start == 0 && window.limit() == Integer.MAX_VALUE) {
+                        throw new UncheckedIOException(new IOException("Record too large at " + keyStart));
+                    }
+                    // Grow the window if the key does not fit into a whole one
+                    final int size = start == 0 ? (int) Math.min(Integer.MAX_VALUE, 2L * window.limit()) : WINDOW_SIZE;
+                    try {
+                        map(keyStart, size);
+                    } catch (IOException io) {
+                        throw new UncheckedIOException(io);
+                    }
+                }
+            }
+        }
+
+        void checkEnd() throws IOException {
+            if (windowStart + window.position() != fileSize) {
+                throw new IOException("Unexpected data after " + count + " keys");
+            }
+        }
+
+        private void map(long start, int size) throws IOException {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size, fileSize - start));
+        }
+    }
+}
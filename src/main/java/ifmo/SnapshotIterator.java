@@ -0,0 +1,108 @@
+package ifmo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/*
+Iterator over the nodes of a collected snapshot in key order.
+Collected nodes consist of sorted runs (one per traversal that took part in the collection),
+so they are merged lazily with the sorted insert reports instead of being sorted as a whole
+ */
+final class SnapshotIterator<N> implements Iterator<N> {
+    private final Comparator<? super N> order;
+    private final java.util.Set<N> deleted = new HashSet<>();
+    private final PriorityQueue<Run<N>> runs;
+    private N next;
+
+    SnapshotIterator(SnapCollector<N> collector, Comparator<? super N> order) {
+        this.order = order;
+        this.runs = new PriorityQueue<>((a, b) -> order.compare(a.current(), b.current()));
+        final List<N> inserted = new ArrayList<>();
+        collector.readReports().forEach(report -> {
+            switch (report.type) {
+                case DELETED:
+                    deleted.add(report.value);
+                    break;
+                case INSERTED:
+                    inserted.add(report.value);
+                    break;
+            }
+        });
+        inserted.sort(order);
+        addRuns(collector.readNodes());
+        addRuns(inserted);
+        next = advance(null);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public N next() {
+        final N result = next;
+        if (result == null) {
+            throw new NoSuchElementException();
+        }
+        next = advance(result);
+        return result;
+    }
+
+    /*
+    Returns the smallest node greater than `last` that was not reported as deleted.
+    Different nodes with the same key are returned once
+     */
+    private N advance(N last) {
+        while (!runs.isEmpty()) {
+            final Run<N> run = runs.poll();
+            final N candidate = run.current();
+            if (run.advance()) {
+                runs.add(run);
+            }
+            if (deleted.contains(candidate) || last != null && order.compare(last, candidate) == 0) {
+                continue;
+            }
+            return candidate;
+        }
+        return null;
+    }
+
+    private void addRuns(List<N> nodes) {
+        int start = 0;
+        for (int i = 1; i <= nodes.size(); i++) {
+            if (i == nodes.size() || order.compare(nodes.get(i - 1), nodes.get(i)) >= 0) {
+                runs.add(new Run<>(nodes, start, i));
+                start = i;
+            }
+        }
+    }
+
+    /*
+    Sorted range of a list
+     */
+    private static final class Run<V> {
+        private final List<V> nodes;
+        private final int end;
+        private int position;
+
+        Run(List<V> nodes, int start, int end) {
+            this.nodes = nodes;
+            this.position = start;
+            this.end = end;
+        }
+
+        V current() {
+            return nodes.get(position);
+        }
+
+        boolean advance() {
+            return ++position < end;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ifmo;
+
+import java.util.Iterator;
+import java.util.List;
+
+/*
+ Lock-free set partitioned by key hash into independent `ConcurrentSet` shards,
+ so that writers of different keys do not contend on the same list.
+ The shards share snapshot collectors, which keeps the iterator linearizable over the whole set.
+ */
+final class StripedConcurrentSet<T extends Comparable<T>> implements Set<T> {
+    private final List<ConcurrentSet<T>> shards;
+    private final int mask;
+
+    StripedConcurrentSet() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+    `shardCount` is rounded up to a power of two
+     */
+    StripedConcurrentSet(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        final int count = shardCount == 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+        this.shards = ConcurrentSet.newShards(count);
+        this.mask = count - 1;
+    }
+
+    @Override
+    public boolean add(T value) {
+        return shardFor(value).add(value);
+    }
+
+    @Override
+    public boolean remove(T value) {
+        return shardFor(value).remove(value);
+    }
+
+    @Override
+    public boolean contains(T value) {
+        return shardFor(value).contains(value);
+    }
+
+    /*
+    Emptiness of all shards at once needs a snapshot
+     */
+    @Override
+    public boolean isEmpty() {
+        return !iterator().hasNext();
+    }
+
+    /*
+    Sum of the estimates of the shards
+     */
+    @Override
+    public long estimatedSize() {
+        long size = 0;
+        for (ConcurrentSet<T> shard : shards) {
+            size += shard.estimatedSize();
+        }
+        return size;
+    }
+
+    /*
+    Keys of all shards merged in key order
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return ConcurrentSet.iteratorOver(shards);
+    }
+
+    private ConcurrentSet<T> shardFor(T value) {
+        int hash = value.hashCode() * 0x9E3779B9;
+        return shards.get((hash ^ hash >>> 16) & mask);
+    }
+}
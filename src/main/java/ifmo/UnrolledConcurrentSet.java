@@ -0,0 +1,407 @@
+package ifmo;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ Lock-free set on an unrolled list: every chunk keeps up to `CAPACITY` sorted keys in an array,
+ so a search follows one reference per chunk instead of one per key.
+
+ Keys are held by entries, an entry is removed from the set by marking it (as a node of Harris list).
+ Chunks are immutable copies: a chunk is changed by freezing its next reference with a descriptor
+ that carries the replacement chain, which ends with the frozen successor. A chunk overflowing on insertion
+ is replaced by two halves, a chunk with many removed entries is replaced by a compacted copy or dropped if it is empty.
+ Whoever meets a frozen chunk swings its predecessor to the replacement.
+ Entries are shared between a chunk and its copies, so a concurrent removal is never lost by copying.
+
+ Iterator implementation based on http://www.cs.technion.ac.il/~erez/Papers/iterators-disc13.pdf,
+ entries play the role of the list nodes in the snapshot.
+ */
+final class UnrolledConcurrentSet<T extends Comparable<T>> implements Set<T> {
+    private static final int CAPACITY = 32;
+
+    private final Chunk<T> tail = new Chunk<>(new Object[0], newEntries(0), null);
+    private final Chunk<T> head = new Chunk<>(new Object[0], newEntries(0), tail);
+    private final AtomicReference<SnapCollector<Entry<T>>> snapCollectorHolder =
+            new AtomicReference<>(new SnapCollector<>(false));
+    private final LongAdder count = new LongAdder();
+
+    @Override
+    public boolean add(T value) {
+        while (true) {
+            final Pair<Chunk<T>> place = find(value);
+            final Chunk<T> pred = place.first;
+            final Chunk<T> target = place.second;
+            final Entry<T> entry = new Entry<>(value);
+            if (target == head) {
+                // The set has no chunks
+                final Entry<T>[] entries = newEntries(1);
+                entries[0] = entry;
+                if (head.compareAndSetNext(tail, new Chunk<>(new Object[]{value}, entries, tail))) {
+                    count.increment();
+                    reportInsert(entry);
+                    return true;
+                }
+                continue;
+            }
+            final int index = target.indexOf(value);
+            if (index >= 0) {
+                final Entry<T> existing = target.entries[index];
+                if (!existing.isDeleted()) {
+                    reportInsert(existing);
+                    return false;
+                }
+                reportDelete(existing);
+            }
+            final Chunk<T> succ = target.next;
+            if (succ instanceof Frozen) {
+                continue;
+            }
+            final Chunk<T> replacement = rebuild(target, entry, succ);
+            if (target.freeze(succ, replacement)) {
+                count.increment();
+                reportInsert(entry);
+                pred.compareAndSetNext(target, replacement);
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(T value) {
+        final Pair<Chunk<T>> place = find(value);
+        final Chunk<T> target = place.second;
+        final int index = target == head ? -1 : target.indexOf(value);
+        if (index < 0) {
+            return false;
+        }
+        final Entry<T> entry = target.entries[index];
+        if (!entry.markDeleted()) {
+            reportDelete(entry);
+            return false;
+        }
+        count.decrement();
+        reportDelete(entry);
+        compact(place.first, target);
+        return true;
+    }
+
+    @Override
+    public boolean contains(T value) {
+        Chunk<T> curr = head.next;
+        while (curr != tail) {
+            if (reaches(curr, value)) {
+                final int index = curr.indexOf(value);
+                if (index >= 0) {
+                    final Entry<T> entry = curr.entries[index];
+                    if (!entry.isDeleted()) {
+                        reportInsert(entry);
+                        return true;
+                    }
+                    reportDelete(entry);
+                }
+                // The key may have been inserted into a copy of the chunk
+                final Chunk<T> succ = curr.next;
+                if (!(succ instanceof Frozen)) {
+                    return false;
+                }
+                curr = ((Frozen<T>) succ).replacement;
+            } else {
+                curr = curr.following();
+            }
+        }
+        return false;
+    }
+
+    /*
+    Checks the first chunk only: a live entry in it is reported, a chunk of removed entries is dropped
+    and the new first chunk is checked, so the set is empty only when head is followed by tail
+     */
+    @Override
+    public boolean isEmpty() {
+        while (true) {
+            final Chunk<T> first = head.next;
+            if (first == tail) {
+                return true;
+            }
+            final Chunk<T> succ = first.next;
+            if (succ instanceof Frozen) {
+                head.compareAndSetNext(first, ((Frozen<T>) succ).replacement);
+                continue;
+            }
+            for (Entry<T> entry : first.entries) {
+                if (!entry.isDeleted()) {
+                    reportInsert(entry);
+                    return false;
+                }
+            }
+            compact(head, first);
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        final SnapCollector<Entry<T>> collector = SnapCollector.acquire(snapCollectorHolder);
+        collectNodes(collector);
+        collector.blockFurtherNodes();
+        collector.deactivate();
+        collector.blockFurtherReports();
+        final Iterator<Entry<T>> entries = collector.iterator(UnrolledConcurrentSet::compare);
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return entries.next().key;
+            }
+        };
+    }
+
+    @Override
+    public long estimatedSize() {
+        return Math.max(0, count.sum());
+    }
+
+    /*
+    Returns the chunk where `value` belongs and its predecessor.
+    It is the first chunk whose last key is not less than `value`, the last chunk if there is none,
+    or head if the set has no chunks. Frozen chunks on the way are replaced
+     */
+    private Pair<Chunk<T>> find(T value) {
+        while (true) {
+            Chunk<T> before = null;
+            Chunk<T> pred = head;
+            Chunk<T> curr = head.next;
+            boolean continueOuterLoop = false;
+            while (curr != tail) {
+                final Chunk<T> succ = curr.next;
+                if (succ instanceof Frozen) {
+                    final Chunk<T> replacement = ((Frozen<T>) succ).replacement;
+                    if (pred.compareAndSetNext(curr, replacement)) {
+                        curr = replacement;
+                        continue;
+                    }
+                    continueOuterLoop = true;
+                    break;
+                }
+                if (reaches(curr, value)) {
+                    return new Pair<>(pred, curr);
+                }
+                before = pred;
+                pred = curr;
+                curr = succ;
+            }
+            if (continueOuterLoop) {
+                continue;
+            }
+            return new Pair<>(before, pred);
+        }
+    }
+
+    /*
+    Replaces the chunk by a copy without removed entries if they take a half of it
+     */
+    private void compact(Chunk<T> pred, Chunk<T> chunk) {
+        int deleted = 0;
+        for (Entry<T> entry : chunk.entries) {
+            if (entry.isDeleted()) {
+                deleted++;
+            }
+        }
+        if (2 * deleted < chunk.entries.length) {
+            return;
+        }
+        final Chunk<T> succ = chunk.next;
+        if (succ instanceof Frozen) {
+            return;
+        }
+        final Chunk<T> replacement = rebuild(chunk, null, succ);
+        if (chunk.freeze(succ, replacement)) {
+            pred.compareAndSetNext(chunk, replacement);
+        }
+    }
+
+    /*
+    Builds the replacement of the chunk: its live entries and `added` if it is not null, followed by `succ`.
+    Returns `succ` if there are no entries, splits the entries in halves if they do not fit into one chunk
+     */
+    private Chunk<T> rebuild(Chunk<T> chunk, Entry<T> added, Chunk<T> succ) {
+        final Entry<T>[] entries = newEntries(chunk.entries.length + 1);
+        int size = 0;
+        for (Entry<T> entry : chunk.entries) {
+            if (added != null && entry.key.compareTo(added.key) > 0) {
+                entries[size++] = added;
+                added = null;
+            }
+            if (entry.isDeleted()) {
+                reportDelete(entry);
+            } else {
+                entries[size++] = entry;
+            }
+        }
+        if (added != null) {
+            entries[size++] = added;
+        }
+        if (size <= CAPACITY) {
+            return size == 0 ? succ : newChunk(entries, 0, size, succ);
+        }
+        final int half = size / 2;
+        return newChunk(entries, 0, half, newChunk(entries, half, size, succ));
+    }
+
+    private static <V> Chunk<V> newChunk(Entry<V>[] entries, int from, int to, Chunk<V> next) {
+        final Entry<V>[] copy = Arrays.copyOfRange(entries, from, to);
+        final Object[] keys = new Object[copy.length];
+        for (int i = 0; i < copy.length; i++) {
+            keys[i] = copy[i].key;
+        }
+        return new Chunk<>(keys, copy, next);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <V> Entry<V>[] newEntries(int size) {
+        return new Entry[size];
+    }
+
+    /*
+    Checks that the last key of the chunk is not less than `value`
+     */
+    @SuppressWarnings("unchecked")
+    private static <V extends Comparable<V>> boolean reaches(Chunk<V> chunk, V value) {
+        return ((V) chunk.keys[chunk.keys.length - 1]).compareTo(value) >= 0;
+    }
+
+    private static <V extends Comparable<V>> int compare(Entry<V> a, Entry<V> b) {
+        return a.key.compareTo(b.key);
+    }
+
+    private void reportDelete(Entry<T> entry) {
+        final SnapCollector<Entry<T>> collector = snapCollectorHolder.get();
+        if (collector.isActive()) {
+            collector.addReport(new Report<>(entry, Report.ReportType.DELETED));
+        }
+    }
+
+    private void reportInsert(Entry<T> entry) {
+        final SnapCollector<Entry<T>> collector = snapCollectorHolder.get();
+        if (collector.isActive() && !entry.isDeleted()) {
+            collector.addReport(new Report<>(entry, Report.ReportType.INSERTED));
+        }
+    }
+
+    /*
+    Joins the active snapshot or starts a new one
+     */
+    /*
+    Adds live entries to the collector. Frozen chunks are followed by their replacements
+     */
+    private void collectNodes(SnapCollector<Entry<T>> collector) {
+        Chunk<T> curr = head.next;
+        while (curr != tail && collector.isActive()) {
+            for (Entry<T> entry : curr.entries) {
+                if (!entry.isDeleted()) {
+                    collector.addNode(entry);
+                }
+            }
+            curr = curr.following();
+        }
+    }
+
+    /*
+    Key of the set, marked when it is removed
+     */
+    private static final class Entry<V> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Entry> DELETED =
+                AtomicIntegerFieldUpdater.newUpdater(Entry.class, "deleted");
+
+        final V key;
+        private volatile int deleted;
+
+        Entry(V key) {
+            this.key = key;
+        }
+
+        boolean isDeleted() {
+            return deleted != 0;
+        }
+
+        /*
+        Returns true only for the call that has actually marked the entry
+         */
+        boolean markDeleted() {
+            return DELETED.compareAndSet(this, 0, 1);
+        }
+    }
+
+    /*
+    Chunk of the list. `keys` duplicate the keys of `entries`, so that a search does not touch the entries
+     */
+    private static class Chunk<V> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Chunk, Chunk> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Chunk.class, Chunk.class, "next");
+
+        final Object[] keys;
+        final Entry<V>[] entries;
+
+        /**
+         * Reference to the next chunk, or a descriptor if the chunk is frozen
+         */
+        volatile Chunk<V> next;
+
+        Chunk(Object[] keys, Entry<V>[] entries, Chunk<V> next) {
+            this.keys = keys;
+            this.entries = entries;
+            this.next = next;
+        }
+
+        /*
+        Index of `value` in the chunk, or a negative number if it is absent
+         */
+        int indexOf(Object value) {
+            return Arrays.binarySearch(keys, value);
+        }
+
+        /*
+        Next chunk of the set: the replacement if the chunk is frozen
+         */
+        Chunk<V> following() {
+            final Chunk<V> succ = next;
+            return succ instanceof Frozen ? ((Frozen<V>) succ).replacement : succ;
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean compareAndSetNext(Chunk<V> expectedNext, Chunk<V> newNext) {
+            return NEXT.compareAndSet(this, expectedNext, newNext);
+        }
+
+        /*
+        Freezes the chunk if its successor is still `expectedNext`.
+        The replacement chain must end with `expectedNext`
+         */
+        @SuppressWarnings("unchecked")
+        boolean freeze(Chunk<V> expectedNext, Chunk<V> replacement) {
+            return NEXT.compareAndSet(this, expectedNext, new Frozen<>(replacement, expectedNext));
+        }
+    }
+
+    /*
+    Descriptor placed into the next reference of a frozen chunk
+     */
+    private static final class Frozen<V> extends Chunk<V> {
+        final Chunk<V> replacement;
+
+        Frozen(Chunk<V> replacement, Chunk<V> next) {
+            super(null, null, next);
+            this.replacement = replacement;
+        }
+    }
+}
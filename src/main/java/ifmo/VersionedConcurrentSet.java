@@ -0,0 +1,475 @@
+package ifmo;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ Lock-free set with multi-version snapshots.
+ Every node carries the versions of its insertion and deletion taken from a global clock,
+ and an iterator reads the set as of one version instead of collecting reports from the writers.
+
+ A version is assigned after the change itself: the inserted node is linked, the deleted node is claimed,
+ and then the current clock value is stamped into the node. Any operation that meets a change without
+ a version stamps it before using the node, so a change becomes visible together with its version.
+ A snapshot increments the clock and takes the previous value v, changes stamped later get larger versions.
+ A snapshot sees the nodes inserted not later than v and not deleted by v.
+
+ Deleted nodes stay in the list while a snapshot that may see them is running. Snapshots announce a lower bound
+ of their version in per-thread slots, and a deleted node is marked and unlinked (as in Harris list)
+ only when its deletion version does not exceed any announced one.
+ Searches are accelerated by skip-list index towers, as in `ConcurrentSet`.
+ */
+final class VersionedConcurrentSet<T extends Comparable<T>> implements Set<T> {
+    /*
+    Insertion version of a node that has not been stamped, deletion version of a node that is not deleted
+     */
+    private static final long NONE = 0;
+
+    /*
+    Deletion version of a node that has been deleted but not stamped yet
+     */
+    private static final long CLAIMED = -1;
+
+    /*
+    Announced version of a thread that is not taking a snapshot
+     */
+    private static final long INACTIVE = Long.MAX_VALUE;
+
+    private final Node<T> tail = new Node<>(null);
+    private final Node<T> head = new Node<>(null, tail);
+    private final AtomicLong clock = new AtomicLong(1);
+    private final AtomicReference<Slot> slots = new AtomicReference<>();
+    private final ThreadLocal<Slot> slot = ThreadLocal.withInitial(this::registerSlot);
+    private final Index<T>[] heads = IndexLevels.heads(down -> new Index<>(head, down));
+    private final AtomicInteger indexLevel = new AtomicInteger();
+    private final LongAdder count = new LongAdder();
+
+    @Override
+    public boolean add(T value) {
+        while (true) {
+            final Pair<Node<T>> place = find(value);
+            final Node<T> pred = place.first;
+            final Node<T> curr = place.second;
+            if (curr != tail && curr.getValue().compareTo(value) == 0) {
+                insertVersion(curr);
+                if (deleteVersion(curr) == NONE) {
+                    return false;
+                }
+                continue;
+            }
+            final Node<T> nodeToInsert = new Node<>(value, curr);
+            if (pred.compareAndSetNext(curr, nodeToInsert)) {
+                insertVersion(nodeToInsert);
+                count.increment();
+                buildIndex(nodeToInsert);
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(T value) {
+        final Pair<Node<T>> place = find(value);
+        final Node<T> pred = place.first;
+        final Node<T> curr = place.second;
+        if (curr == tail || curr.getValue().compareTo(value) != 0) {
+            return false;
+        }
+        insertVersion(curr);
+        if (!curr.compareAndSetDeleteVersion(NONE, CLAIMED)) {
+            // Deleted concurrently, the deletion takes effect once it has a version
+            deleteVersion(curr);
+            return false;
+        }
+        count.decrement();
+        if (deleteVersion(curr) <= minAnnouncedVersion()) {
+            // Try remove physically
+            final Node<T> succ = curr.getNext();
+            if (curr.markDeleted(succ)) {
+                pred.compareAndSetNext(curr, succ);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(T value) {
+        Node<T> curr = findPredecessor(value, false).getNext();
+        while (curr != tail) {
+            if (!curr.isDeleted()) {
+                final int cmpResult = curr.getValue().compareTo(value);
+                if (cmpResult > 0) {
+                    return false;
+                }
+                if (cmpResult == 0) {
+                    insertVersion(curr);
+                    if (deleteVersion(curr) == NONE) {
+                        return true;
+                    }
+                }
+            }
+            curr = curr.getNext();
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        final Slot current = slot.get();
+        current.version = clock.get();
+        try {
+            final long version = clock.getAndIncrement();
+            for (Node<T> curr = head.getNext(); curr != tail; curr = curr.getNext()) {
+                if (isVisible(curr, version)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            current.version = INACTIVE;
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return snapshot().iterator();
+    }
+
+    @Override
+    public long size() {
+        return snapshot().size();
+    }
+
+    @Override
+    public long estimatedSize() {
+        return Math.max(0, count.sum());
+    }
+
+    /*
+    Keys of the set as of a new version.
+    The keys are copied while the version is announced, so deleted nodes can be unlinked as soon as the copy is made
+     */
+    private List<T> snapshot() {
+        final Slot current = slot.get();
+        current.version = clock.get();
+        try {
+            final long version = clock.getAndIncrement();
+            final List<T> values = new ArrayList<>();
+            for (Node<T> curr = head.getNext(); curr != tail; curr = curr.getNext()) {
+                if (isVisible(curr, version)) {
+                    values.add(curr.getValue());
+                }
+            }
+            return values;
+        } finally {
+            current.version = INACTIVE;
+        }
+    }
+
+    /*
+    Checks that the node belongs to the set as of `version`.
+    Marked nodes have been deleted before any announced version
+     */
+    private boolean isVisible(Node<T> node, long version) {
+        if (node.isDeleted() || insertVersion(node) > version) {
+            return false;
+        }
+        final long deleted = deleteVersion(node);
+        return deleted == NONE || deleted > version;
+    }
+
+    /*
+    Returns the insertion version of the node, stamping it if needed
+     */
+    private long insertVersion(Node<T> node) {
+        final long version = node.insertVersion;
+        if (version != NONE) {
+            return version;
+        }
+        node.compareAndSetInsertVersion(NONE, clock.get());
+        return node.insertVersion;
+    }
+
+    /*
+    Returns the deletion version of the node, stamping it if the node has been claimed, or NONE
+     */
+    private long deleteVersion(Node<T> node) {
+        final long version = node.deleteVersion;
+        if (version != CLAIMED) {
+            return version;
+        }
+        node.compareAndSetDeleteVersion(CLAIMED, clock.get());
+        return node.deleteVersion;
+    }
+
+    /*
+    Smallest version announced by a running snapshot, `INACTIVE` if there are none
+     */
+    private long minAnnouncedVersion() {
+        long min = INACTIVE;
+        for (Slot s = slots.get(); s != null; s = s.next) {
+            min = Math.min(min, s.version);
+        }
+        return min;
+    }
+
+    private Slot registerSlot() {
+        final Slot s = new Slot();
+        do {
+            s.next = slots.get();
+        } while (!slots.compareAndSet(s.next, s));
+        return s;
+    }
+
+    /*
+    Returns the first node that is not deleted and not less than `value`, or tail, and its predecessor.
+    Deleted nodes that no snapshot can see are unlinked on the way, the others are passed over.
+    The announced versions are read after the clock and are reused only for deletion versions not greater
+    than that clock value: a snapshot that announces later takes a version not less than it, and a snapshot
+    that announced earlier is among them. A node stamped after they were read gets them read again,
+    otherwise a snapshot that announced in between could lose it
+     */
+    private Pair<Node<T>> find(T value) {
+        while (true) {
+            Node<T> pred = findPredecessor(value, true);
+            Node<T> curr = pred.getNext();
+            // Clock value read before the announced versions
+            long observed = NONE;
+            long announced = NONE;
+            boolean continueOuterLoop = false;
+            while (curr != tail) {
+                final Node<T> succ = curr.getNext();
+                if (curr.isDeleted()) {
+                    // Try remove physically
+                    if (pred.compareAndSetNext(curr, succ)) {
+                        curr = succ;
+                        continue;
+                    }
+                    continueOuterLoop = true;
+                    break;
+                }
+                final int cmpResult = curr.getValue().compareTo(value);
+                if (cmpResult > 0) {
+                    break;
+                }
+                final long deleted = deleteVersion(curr);
+                if (deleted == NONE) {
+                    if (cmpResult == 0) {
+                        break;
+                    }
+                } else {
+                    if (deleted > observed) {
+                        observed = clock.get();
+                        announced = minAnnouncedVersion();
+                    }
+                    if (deleted <= announced) {
+                        // The node is looked at again: marked, it gets unlinked
+                        curr.markDeleted(succ);
+                        continue;
+                    }
+                }
+                pred = curr;
+                curr = succ;
+            }
+            if (continueOuterLoop) {
+                continue;
+            }
+            return new Pair<>(pred, curr);
+        }
+    }
+
+    /*
+    Returns head or a node with a smaller value that was not marked when the index was traversed
+     */
+    private Node<T> findPredecessor(T value, boolean unlink) {
+        return searchIndex(value, 0, unlink).node;
+    }
+
+    /*
+    Descends the index down to `level` and returns the rightmost index entry with a smaller value.
+    Entries of marked nodes are unlinked on the way if `unlink` is set, `contains` steps over them without writes
+     */
+    private Index<T> searchIndex(T value, int level, boolean unlink) {
+        int currentLevel = Math.max(indexLevel.get(), level);
+        Index<T> q = heads[currentLevel];
+        while (true) {
+            Index<T> r = q.getRight();
+            while (r != null && r.node.isDeleted()) {
+                if (unlink) {
+                    q.compareAndSetRight(r, r.getRight());
+                    r = q.getRight();
+                } else {
+                    r = r.getRight();
+                }
+            }
+            if (r != null && r.node.getValue().compareTo(value) < 0) {
+                q = r;
+                continue;
+            }
+            if (currentLevel == level) {
+                return q;
+            }
+            q = q.down;
+            currentLevel--;
+        }
+    }
+
+    private void buildIndex(Node<T> node) {
+        final int levels = IndexLevels.randomLevel();
+        Index<T> down = null;
+        for (int level = 0; level < levels; level++) {
+            final Index<T> index = new Index<>(node, down);
+            if (!linkIndex(index, level)) {
+                return;
+            }
+            down = index;
+        }
+        int current = indexLevel.get();
+        while (current < levels - 1 && !indexLevel.compareAndSet(current, levels - 1)) {
+            current = indexLevel.get();
+        }
+    }
+
+    private boolean linkIndex(Index<T> index, int level) {
+        final T value = index.node.getValue();
+        while (!index.node.isDeleted()) {
+            final Index<T> pred = searchIndex(value, level, true);
+            final Index<T> succ = pred.getRight();
+            index.setRight(succ);
+            if (pred.compareAndSetRight(succ, index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+    Version announced by a thread while it takes a snapshot
+     */
+    private static final class Slot {
+        volatile long version = INACTIVE;
+        Slot next;
+    }
+
+    /*
+    Node element
+     */
+    private static class Node<V> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<Node> INSERT_VERSION =
+                AtomicLongFieldUpdater.newUpdater(Node.class, "insertVersion");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<Node> DELETE_VERSION =
+                AtomicLongFieldUpdater.newUpdater(Node.class, "deleteVersion");
+
+        /**
+         * Value
+         */
+        private final V value;
+
+        /**
+         * Reference to the next node.
+         * Once the node has been unlinked from all snapshots it refers to a marker whose next is the successor
+         */
+        private volatile Node<V> next;
+
+        private volatile long insertVersion = NONE;
+        private volatile long deleteVersion = NONE;
+
+        Node(V value) {
+            this(value, null);
+        }
+
+        Node(V value, Node<V> next) {
+            this.value = value;
+            this.next = next;
+        }
+
+        /*
+        Checks that the node is marked for physical removal
+         */
+        boolean isDeleted() {
+            return next instanceof Marker;
+        }
+
+        V getValue() {
+            return value;
+        }
+
+        Node<V> getNext() {
+            final Node<V> succ = next;
+            return succ instanceof Marker ? succ.next : succ;
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean compareAndSetNext(Node<V> expectedNext, Node<V> newNext) {
+            return NEXT.compareAndSet(this, expectedNext, newNext);
+        }
+
+        /*
+        Marks the node for physical removal if its successor is still `expectedNext`
+         */
+        @SuppressWarnings("unchecked")
+        boolean markDeleted(Node<V> expectedNext) {
+            return NEXT.compareAndSet(this, expectedNext, new Marker<>(expectedNext));
+        }
+
+        boolean compareAndSetInsertVersion(long expected, long version) {
+            return INSERT_VERSION.compareAndSet(this, expected, version);
+        }
+
+        boolean compareAndSetDeleteVersion(long expected, long version) {
+            return DELETE_VERSION.compareAndSet(this, expected, version);
+        }
+    }
+
+    /*
+    Marker placed after a node marked for physical removal, freezes its next reference
+     */
+    private static final class Marker<V> extends Node<V> {
+        Marker(Node<V> next) {
+            super(null, next);
+        }
+    }
+
+    /*
+    Index entry: refers to a node of the list and to the entry one level below
+     */
+    private static class Index<V> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Index, Index> RIGHT =
+                AtomicReferenceFieldUpdater.newUpdater(Index.class, Index.class, "right");
+
+        final Node<V> node;
+        final Index<V> down;
+        private volatile Index<V> right;
+
+        Index(Node<V> node, Index<V> down) {
+            this.node = node;
+            this.down = down;
+        }
+
+        Index<V> getRight() {
+            return right;
+        }
+
+        void setRight(Index<V> newRight) {
+            right = newRight;
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean compareAndSetRight(Index<V> expectedRight, Index<V> newRight) {
+            return RIGHT.compareAndSet(this, expectedRight, newRight);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ifmo;
+
+import com.devexperts.dxlab.lincheck.LinChecker;
+import com.devexperts.dxlab.lincheck.annotations.Operation;
+import com.devexperts.dxlab.lincheck.annotations.Param;
+import com.devexperts.dxlab.lincheck.paramgen.IntGen;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Operations checked for every `Set<Integer>` implementation, subclasses provide the set
+ */
+public abstract class AbstractSetLinCheckTest {
+    private final Set<Integer> set = getInstance();
+
+    protected abstract Set<Integer> getInstance();
+
+    @Operation
+    public boolean add(@Param(gen = IntGen.class, conf = "-10:10") int key) {
+        return set.add(key);
+    }
+
+    @Operation
+    public boolean remove(@Param(gen = IntGen.class, conf = "-10:10") int key) {
+        return set.remove(key);
+    }
+
+    @Operation
+    public boolean contains(@Param(gen = IntGen.class, conf = "-10:10") int key) {
+        return set.contains(key);
+    }
+
+    @Operation
+    public boolean isEmpty() {
+        return set.isEmpty();
+    }
+
+    @Operation
+    public List<Integer> snapshot() {
+        List<Integer> snap = new ArrayList<>();
+        set.iterator().forEachRemaining(snap::add);
+        return snap;
+    }
+
+    @Test
+    public void runTest() {
+        LinChecker.check(getClass());
+    }
+}
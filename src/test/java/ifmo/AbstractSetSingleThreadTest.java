@@ -0,0 +1,78 @@
+package ifmo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+/*
+Checks shared by the `Set<Integer>` implementations, subclasses provide the set and add their own cases
+ */
+public abstract class AbstractSetSingleThreadTest {
+    protected abstract Set<Integer> getInstance();
+
+    @Test
+    public void testAddRemove() {
+        Set<Integer> set = getInstance();
+
+        Assert.assertTrue(set.isEmpty());
+        Assert.assertFalse(set.remove(42));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(set.add(i));
+        }
+        Assert.assertFalse(set.add(42));
+        Assert.assertTrue(set.contains(42));
+        Assert.assertTrue(set.remove(42));
+        Assert.assertFalse(set.remove(42));
+        Assert.assertFalse(set.contains(42));
+        Assert.assertTrue(set.add(42));
+        Assert.assertTrue(set.contains(42));
+        Assert.assertFalse(set.isEmpty());
+        Assert.assertEquals(100, set.size());
+        Assert.assertEquals(100, set.estimatedSize());
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(set.remove(i));
+        }
+        Assert.assertTrue(set.isEmpty());
+        Assert.assertTrue(set.add(7));
+        Assert.assertEquals(1, set.size());
+    }
+
+    @Test
+    public void compareWithDefaultSet() {
+        Set<Integer> mySet = getInstance();
+        java.util.Set<Integer> originalSet = new TreeSet<>();
+
+        Random rand = new Random(0);
+        for (int count = 0; count < 500; count++) {
+            for (int i = -256; i < 256; i++) {
+                switch (rand.nextInt() % 5) {
+                    case 0:
+                        Assert.assertEquals(originalSet.add(i), mySet.add(i));
+                        break;
+                    case 1:
+                        Assert.assertEquals(originalSet.remove(i), mySet.remove(i));
+                        break;
+                    case 2:
+                        Assert.assertEquals(originalSet.contains(i), mySet.contains(i));
+                        break;
+                    case 3:
+                        final Iterator<Integer> originalIterator = originalSet.iterator();
+                        final Iterator<Integer> myIterator = mySet.iterator();
+                        while (originalIterator.hasNext() && myIterator.hasNext()) {
+                            Assert.assertEquals(originalIterator.next(), myIterator.next());
+                        }
+                        Assert.assertEquals(originalIterator.hasNext(), myIterator.hasNext());
+                        break;
+                    case 4:
+                        Assert.assertEquals(originalSet.isEmpty(), mySet.isEmpty());
+                        break;
+                }
+            }
+        }
+        Assert.assertEquals(originalSet.size(), mySet.size());
+    }
+}
@@ -0,0 +1,216 @@
+package ifmo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class CombiningSetConcurrentTest {
+    /*
+    While the combiner is blocked in its own operation, the other threads only publish theirs.
+    The combiner applies them in its next pass in ascending order, they never search the set themselves
+     */
+    @Test
+    public void testBatch() throws InterruptedException {
+        final ConcurrentSet<Key> feedSet = ConcurrentSet.withChangeFeed(64);
+        final CombiningConcurrentSet<Key> set = new CombiningConcurrentSet<>(feedSet, Integer.MAX_VALUE);
+        final Probe probe = new Probe();
+        set.add(new Key(0, probe));
+        final ChangeFeed.Subscription<Key> subscription = feedSet.subscribe();
+        probe.searching.clear();
+
+        final Thread combiner = start(() -> set.add(Key.blocking(100, probe)));
+        probe.entered.await();
+        final int[] values = {4, 2, 3, 1};
+        final AtomicReferenceArray<Object> results = new AtomicReferenceArray<>(values.length);
+        final List<Thread> waiting = publish(set, values, probe, results);
+
+        probe.gate.countDown();
+        combiner.join();
+        for (Thread thread : waiting) {
+            thread.join();
+        }
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(Boolean.TRUE, results.get(i));
+        }
+        Assert.assertEquals(Collections.singleton(combiner), probe.searching.keySet());
+        Assert.assertEquals(Arrays.asList(100, 1, 2, 3, 4), inserted(subscription.changes));
+    }
+
+    /*
+    A failed operation is reported to its own thread only, the rest of its batch is applied
+     */
+    @Test
+    public void testFailureInBatch() throws InterruptedException {
+        final CombiningConcurrentSet<Key> set = new CombiningConcurrentSet<>(new ConcurrentSet<Key>(), Integer.MAX_VALUE);
+        final Probe probe = new Probe();
+        set.add(new Key(0, probe));
+
+        final Thread combiner = start(() -> set.add(Key.blocking(100, probe)));
+        probe.entered.await();
+        final int[] values = {3, -1, 2};
+        final AtomicReferenceArray<Object> results = new AtomicReferenceArray<>(values.length);
+        final List<Thread> waiting = publish(set, values, probe, results);
+
+        probe.gate.countDown();
+        combiner.join();
+        for (Thread thread : waiting) {
+            thread.join();
+        }
+        Assert.assertEquals(Boolean.TRUE, results.get(0));
+        Assert.assertTrue(results.get(1) instanceof IllegalStateException);
+        Assert.assertEquals(Boolean.TRUE, results.get(2));
+        Assert.assertTrue(set.contains(new Key(2, probe)));
+        Assert.assertTrue(set.contains(new Key(3, probe)));
+        Assert.assertEquals(4, set.size());
+    }
+
+    /*
+    A thread that runs out of patience applies its operation itself while the combiner is blocked
+     */
+    @Test
+    public void testTakeBack() throws InterruptedException {
+        final CombiningConcurrentSet<Key> set = new CombiningConcurrentSet<>(new ConcurrentSet<Key>(), 0);
+        final Probe probe = new Probe();
+        set.add(new Key(0, probe));
+
+        final Thread combiner = start(() -> set.add(Key.blocking(100, probe)));
+        probe.entered.await();
+        final AtomicReferenceArray<Object> results = new AtomicReferenceArray<>(2);
+        final Thread waiting = start(() -> {
+            results.set(0, set.add(new Key(5, probe)));
+            results.set(1, set.remove(new Key(0, probe)));
+        });
+        waiting.join(10_000);
+        Assert.assertFalse(waiting.isAlive());
+        Assert.assertTrue(combiner.isAlive());
+        Assert.assertEquals(Boolean.TRUE, results.get(0));
+        Assert.assertEquals(Boolean.TRUE, results.get(1));
+
+        probe.gate.countDown();
+        combiner.join();
+        Assert.assertTrue(set.contains(new Key(5, probe)));
+        Assert.assertFalse(set.contains(new Key(0, probe)));
+        Assert.assertEquals(2, set.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativePatience() {
+        new CombiningConcurrentSet<Integer>(new ConcurrentSet<>(), -1);
+    }
+
+    @Test
+    public void testFailureInOwnOperation() {
+        final CombiningConcurrentSet<Key> set = new CombiningConcurrentSet<>();
+        final Probe probe = new Probe();
+        set.add(new Key(0, probe));
+        try {
+            set.add(new Key(-1, probe));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // The key cannot be compared
+        }
+        try {
+            set.remove(new Key(-1, probe));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // The key cannot be compared
+        }
+        Assert.assertTrue(set.add(new Key(1, probe)));
+        Assert.assertTrue(set.remove(new Key(0, probe)));
+        Assert.assertEquals(1, set.size());
+    }
+
+    private static List<Thread> publish(CombiningConcurrentSet<Key> set, int[] values, Probe probe,
+                                        AtomicReferenceArray<Object> results) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(values.length);
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            final int index = i;
+            threads.add(start(() -> {
+                started.countDown();
+                try {
+                    results.set(index, set.add(new Key(values[index], probe)));
+                } catch (RuntimeException e) {
+                    results.set(index, e);
+                }
+            }));
+        }
+        started.await();
+        // The combiner is blocked, give the threads time to publish their operations
+        Thread.sleep(200);
+        return threads;
+    }
+
+    private static Thread start(Runnable task) {
+        final Thread thread = new Thread(task);
+        thread.start();
+        return thread;
+    }
+
+    private static List<Integer> inserted(ChangeFeed.Cursor<Key> changes) {
+        final List<Integer> values = new ArrayList<>();
+        ChangeFeed.Change<Key> change;
+        while ((change = changes.poll()) != null) {
+            Assert.assertEquals(Report.ReportType.INSERTED, change.type);
+            values.add(change.value.value);
+        }
+        return values;
+    }
+
+    /*
+    Records the threads that compare keys and blocks the comparisons of a key until the gate opens
+     */
+    private static final class Probe {
+        final ConcurrentHashMap<Thread, Boolean> searching = new ConcurrentHashMap<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+    }
+
+    /*
+    Key compared by value, negative values cannot be compared. A key created by `blocking`
+    waits for the gate of its probe when compared
+     */
+    private static final class Key implements Comparable<Key> {
+        final int value;
+        final Probe probe;
+        final boolean blocking;
+
+        Key(int value, Probe probe) {
+            this(value, probe, false);
+        }
+
+        private Key(int value, Probe probe, boolean blocking) {
+            this.value = value;
+            this.probe = probe;
+            this.blocking = blocking;
+        }
+
+        static Key blocking(int value, Probe probe) {
+            return new Key(value, probe, true);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            if (value < 0 || other.value < 0) {
+                throw new IllegalStateException("Broken key");
+            }
+            probe.searching.put(Thread.currentThread(), true);
+            if (blocking || other.blocking) {
+                probe.entered.countDown();
+                try {
+                    probe.gate.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return Integer.compare(value, other.value);
+        }
+    }
+}
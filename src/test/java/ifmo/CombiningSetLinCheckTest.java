@@ -0,0 +1,11 @@
+package ifmo;
+
+import com.devexperts.dxlab.lincheck.strategy.stress.StressCTest;
+
+@StressCTest
+public class CombiningSetLinCheckTest extends AbstractSetLinCheckTest {
+    @Override
+    protected Set<Integer> getInstance() {
+        return new CombiningConcurrentSet<>();
+    }
+}
@@ -0,0 +1,8 @@
+package ifmo;
+
+public class CombiningSetSingleThreadTest extends AbstractSetSingleThreadTest {
+    @Override
+    protected Set<Integer> getInstance() {
+        return new CombiningConcurrentSet<>();
+    }
+}
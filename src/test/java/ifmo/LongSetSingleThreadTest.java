@@ -0,0 +1,174 @@
+package ifmo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+public class LongSetSingleThreadTest {
+    private LongConcurrentSet getInstance() {
+        return new LongConcurrentSet();
+    }
+
+    @Test
+    public void testAddRemove() {
+        LongConcurrentSet set = getInstance();
+
+        Assert.assertFalse(set.contains(0L));
+        Assert.assertTrue(set.add(0L));
+        Assert.assertFalse(set.add(0L));
+        Assert.assertTrue(set.add(Long.MIN_VALUE));
+        Assert.assertTrue(set.add(Long.MAX_VALUE));
+
+        Assert.assertTrue(set.contains(Long.MIN_VALUE));
+        Assert.assertTrue(set.contains(0L));
+        Assert.assertTrue(set.contains(Long.MAX_VALUE));
+
+        Assert.assertTrue(set.remove(0L));
+        Assert.assertFalse(set.remove(0L));
+        Assert.assertFalse(set.contains(0L));
+        Assert.assertTrue(set.contains(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testIterator() {
+        LongConcurrentSet set = getInstance();
+
+        Assert.assertTrue(set.add(15L));
+        Assert.assertTrue(set.add(-1L));
+        Assert.assertTrue(set.add(0L));
+
+        final PrimitiveIterator.OfLong iterator = set.iterator();
+
+        Assert.assertEquals(-1L, iterator.nextLong());
+        Assert.assertEquals(0L, iterator.nextLong());
+        Assert.assertEquals(15L, iterator.nextLong());
+
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testOfSorted() {
+        LongConcurrentSet set = LongConcurrentSet.ofSorted(LongStream.range(-50000, 50000).map(i -> i * 3));
+
+        for (long i = -150000; i < 150000; i++) {
+            Assert.assertEquals(i % 3 == 0, set.contains(i));
+        }
+        Assert.assertTrue(set.add(1L));
+        Assert.assertTrue(set.remove(0L));
+
+        final PrimitiveIterator.OfLong iterator = set.iterator();
+        Assert.assertEquals(-150000L, iterator.nextLong());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfSortedUnsorted() {
+        LongConcurrentSet.ofSorted(LongStream.of(3, 1));
+    }
+
+    @Test
+    public void testSize() {
+        LongConcurrentSet set = LongConcurrentSet.ofSorted(LongStream.range(0, 1000));
+        Assert.assertEquals(1000, set.size());
+        Assert.assertEquals(1000, set.estimatedSize());
+
+        set.remove(5L);
+        set.remove(5L);
+        set.add(5000L);
+        set.add(-1L);
+        Assert.assertEquals(1001, set.size());
+        Assert.assertEquals(1001, set.estimatedSize());
+
+        IntConcurrentSet ints = new IntConcurrentSet();
+        ints.add(1);
+        ints.add(2);
+        Assert.assertEquals(2, ints.size());
+        Assert.assertEquals(2, ints.estimatedSize());
+    }
+
+    @Test
+    public void testLongStream() {
+        LongConcurrentSet set = getInstance();
+        for (long i = 0; i < 10000; i++) {
+            set.add(i * 7 % 10000);
+        }
+
+        Assert.assertEquals(10000, set.spliterator().getExactSizeIfKnown());
+        Assert.assertEquals(49995000L, set.parallelLongStream().sum());
+        Assert.assertArrayEquals(LongStream.range(0, 10000).toArray(), set.parallelLongStream().toArray());
+        Assert.assertEquals(10000, set.stream().distinct().count());
+    }
+
+    @Test
+    public void testIntSet() {
+        IntConcurrentSet set = new IntConcurrentSet();
+
+        Assert.assertTrue(set.add(Integer.MAX_VALUE));
+        Assert.assertTrue(set.add(Integer.MIN_VALUE));
+        Assert.assertTrue(set.add(3));
+        Assert.assertFalse(set.add(3));
+        Assert.assertTrue(set.remove(3));
+        Assert.assertFalse(set.contains(3));
+
+        final PrimitiveIterator.OfInt iterator = set.iterator();
+
+        Assert.assertEquals(Integer.MIN_VALUE, iterator.nextInt());
+        Assert.assertEquals(Integer.MAX_VALUE, iterator.nextInt());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testIntStream() {
+        IntConcurrentSet set = new IntConcurrentSet();
+        for (int i = 0; i < 10000; i++) {
+            set.add(i * 7 % 10000 - 5000);
+        }
+
+        final Spliterator.OfInt spliterator = set.spliterator();
+        Assert.assertEquals(10000, spliterator.getExactSizeIfKnown());
+        Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL));
+        Assert.assertEquals(-5000L, set.parallelIntStream().asLongStream().sum());
+        Assert.assertArrayEquals(IntStream.range(-5000, 5000).toArray(), set.parallelIntStream().toArray());
+        Assert.assertEquals(10000, set.stream().distinct().count());
+    }
+
+    @Test
+    public void compareWithDefaultSet() {
+        LongConcurrentSet mySet = getInstance();
+        java.util.Set<Long> originalSet = new TreeSet<>();
+
+        Random rand = new Random(0);
+        for (int count = 0; count < 1000; count++) {
+            for (long i = -256; i < 256; i++) {
+                switch (rand.nextInt() % 5) {
+                    case 0:
+                        Assert.assertEquals(originalSet.add(i), mySet.add(i));
+                        break;
+                    case 1:
+                        Assert.assertEquals(originalSet.remove(i), mySet.remove(i));
+                        break;
+                    case 2:
+                        Assert.assertEquals(originalSet.contains(i), mySet.contains(i));
+                        break;
+                    case 3:
+                        final Iterator<Long> originalIterator = originalSet.iterator();
+                        final PrimitiveIterator.OfLong myIterator = mySet.iterator();
+                        while (originalIterator.hasNext() && myIterator.hasNext()) {
+                            Assert.assertEquals(originalIterator.next().longValue(), myIterator.nextLong());
+                        }
+                        Assert.assertEquals(originalIterator.hasNext(), myIterator.hasNext());
+                        break;
+                    case 4:
+                        Assert.assertEquals(originalSet.isEmpty(), mySet.isEmpty());
+                        break;
+                }
+            }
+        }
+    }
+}
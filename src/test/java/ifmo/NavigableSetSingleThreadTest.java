@@ -0,0 +1,135 @@
+package ifmo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class NavigableSetSingleThreadTest {
+    private NavigableSet<Integer> getInstance() {
+        return new ConcurrentSet<>();
+    }
+
+    @Test
+    public void testNavigation() {
+        NavigableSet<Integer> set = getInstance();
+
+        Assert.assertNull(set.ceiling(0));
+        Assert.assertNull(set.floor(0));
+
+        Assert.assertTrue(set.add(10));
+        Assert.assertTrue(set.add(20));
+        Assert.assertTrue(set.add(30));
+
+        Assert.assertEquals(new Integer(10), set.first());
+        Assert.assertEquals(new Integer(30), set.last());
+
+        Assert.assertEquals(new Integer(20), set.ceiling(20));
+        Assert.assertEquals(new Integer(20), set.ceiling(11));
+        Assert.assertNull(set.ceiling(31));
+
+        Assert.assertEquals(new Integer(20), set.floor(20));
+        Assert.assertEquals(new Integer(10), set.floor(19));
+        Assert.assertNull(set.floor(9));
+
+        Assert.assertEquals(new Integer(30), set.higher(20));
+        Assert.assertNull(set.higher(30));
+
+        Assert.assertEquals(new Integer(10), set.lower(20));
+        Assert.assertNull(set.lower(10));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testFirstOfEmpty() {
+        getInstance().first();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testLastOfEmpty() {
+        NavigableSet<Integer> set = getInstance();
+        set.add(1);
+        set.remove(1);
+        set.last();
+    }
+
+    @Test
+    public void testSubSet() {
+        NavigableSet<Integer> set = getInstance();
+        for (int i = 0; i < 100; i += 10) {
+            Assert.assertTrue(set.add(i));
+        }
+
+        NavigableSet<Integer> subSet = set.subSet(15, 50);
+        Assert.assertEquals(new Integer(20), subSet.first());
+        Assert.assertEquals(new Integer(40), subSet.last());
+        Assert.assertFalse(subSet.contains(10));
+        Assert.assertFalse(subSet.remove(50));
+        Assert.assertTrue(set.contains(50));
+        Assert.assertNull(subSet.higher(40));
+        Assert.assertEquals(new Integer(20), subSet.ceiling(0));
+
+        Assert.assertTrue(subSet.add(25));
+        Assert.assertTrue(set.contains(25));
+
+        List<Integer> snapshot = new ArrayList<>();
+        subSet.iterator().forEachRemaining(snapshot::add);
+        Assert.assertEquals(java.util.Arrays.asList(20, 25, 30, 40), snapshot);
+
+        Assert.assertTrue(set.subSet(41, 49).isEmpty());
+        Assert.assertFalse(subSet.subSet(20, 30).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubSetAddOutOfRange() {
+        getInstance().subSet(0, 10).add(10);
+    }
+
+    @Test
+    public void compareWithDefaultSet() {
+        NavigableSet<Integer> mySet = getInstance();
+        java.util.TreeSet<Integer> originalSet = new TreeSet<>();
+
+        Random rand = new Random(0);
+        for (int count = 0; count < 200; count++) {
+            for (int i = -128; i < 128; i++) {
+                switch (Math.abs(rand.nextInt()) % 7) {
+                    case 0:
+                    case 1:
+                        Assert.assertEquals(originalSet.add(i), mySet.add(i));
+                        break;
+                    case 2:
+                        Assert.assertEquals(originalSet.remove(i), mySet.remove(i));
+                        break;
+                    case 3:
+                        Assert.assertEquals(originalSet.ceiling(i), mySet.ceiling(i));
+                        Assert.assertEquals(originalSet.higher(i), mySet.higher(i));
+                        break;
+                    case 4:
+                        Assert.assertEquals(originalSet.floor(i), mySet.floor(i));
+                        Assert.assertEquals(originalSet.lower(i), mySet.lower(i));
+                        break;
+                    case 5:
+                        if (!originalSet.isEmpty()) {
+                            Assert.assertEquals(originalSet.first(), mySet.first());
+                            Assert.assertEquals(originalSet.last(), mySet.last());
+                        }
+                        break;
+                    case 6:
+                        final int to = i + rand.nextInt(64);
+                        final Iterator<Integer> originalIterator = originalSet.subSet(i, to).iterator();
+                        final Iterator<Integer> myIterator = mySet.subSet(i, to).iterator();
+                        while (originalIterator.hasNext() && myIterator.hasNext()) {
+                            Assert.assertEquals(originalIterator.next(), myIterator.next());
+                        }
+                        Assert.assertEquals(originalIterator.hasNext(), myIterator.hasNext());
+                        break;
+                }
+            }
+        }
+    }
+}
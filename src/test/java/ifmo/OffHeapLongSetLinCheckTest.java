@@ -0,0 +1,43 @@
+package ifmo;
+
+import com.devexperts.dxlab.lincheck.LinChecker;
+import com.devexperts.dxlab.lincheck.annotations.Operation;
+import com.devexperts.dxlab.lincheck.annotations.Param;
+import com.devexperts.dxlab.lincheck.paramgen.IntGen;
+import com.devexperts.dxlab.lincheck.strategy.stress.StressCTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@StressCTest
+public class OffHeapLongSetLinCheckTest {
+    private OffHeapLongSet set = new OffHeapLongSet();
+
+    @Operation
+    public boolean add(@Param(gen = IntGen.class, conf = "-10:10") int key) {
+        return set.add(key);
+    }
+
+    @Operation
+    public boolean remove(@Param(gen = IntGen.class, conf = "-10:10") int key) {
+        return set.remove(key);
+    }
+
+    @Operation
+    public boolean contains(@Param(gen = IntGen.class, conf = "-10:10") int key) {
+        return set.contains(key);
+    }
+
+    @Operation
+    public List<Long> snapshot() {
+        List<Long> snap = new ArrayList<>();
+        set.iterator().forEachRemaining((long key) -> snap.add(key));
+        return snap;
+    }
+
+    @Test
+    public void runTest() {
+        LinChecker.check(OffHeapLongSetLinCheckTest.class);
+    }
+}
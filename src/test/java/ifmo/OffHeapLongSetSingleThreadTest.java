@@ -0,0 +1,156 @@
+package ifmo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class OffHeapLongSetSingleThreadTest {
+
+    @Test
+    public void testAddRemove() {
+        try (OffHeapLongSet set = new OffHeapLongSet()) {
+            Assert.assertFalse(set.contains(0L));
+            Assert.assertTrue(set.add(0L));
+            Assert.assertFalse(set.add(0L));
+            Assert.assertTrue(set.add(Long.MIN_VALUE));
+            Assert.assertTrue(set.add(Long.MAX_VALUE));
+
+            Assert.assertTrue(set.contains(Long.MIN_VALUE));
+            Assert.assertTrue(set.contains(0L));
+            Assert.assertTrue(set.contains(Long.MAX_VALUE));
+
+            Assert.assertTrue(set.remove(0L));
+            Assert.assertFalse(set.remove(0L));
+            Assert.assertFalse(set.contains(0L));
+            Assert.assertTrue(set.contains(Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testManyKeys() {
+        try (OffHeapLongSet set = new OffHeapLongSet()) {
+            for (long i = 0; i < 100000; i++) {
+                Assert.assertTrue(set.add(i * 3));
+            }
+            for (long i = 0; i < 100000; i += 2) {
+                Assert.assertTrue(set.remove(i * 3));
+            }
+            for (long i = 0; i < 300000; i++) {
+                Assert.assertEquals(i % 6 == 3, set.contains(i));
+            }
+
+            final PrimitiveIterator.OfLong iterator = set.iterator();
+            for (long i = 3; i < 300000; i += 6) {
+                Assert.assertEquals(i, iterator.nextLong());
+            }
+            Assert.assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test
+    public void testRecycling() {
+        try (OffHeapLongSet set = new OffHeapLongSet()) {
+            for (long i = 0; i < 100000; i++) {
+                Assert.assertTrue(set.add(i));
+                Assert.assertTrue(set.add(-i - 1));
+                Assert.assertTrue(set.remove(i));
+                Assert.assertTrue(set.remove(-i - 1));
+            }
+            Assert.assertTrue(set.isEmpty());
+            // Removed nodes are reused once nobody can reach them
+            Assert.assertTrue(set.allocatedNodes() < 1000);
+
+            for (long i = 0; i < 1000; i++) {
+                Assert.assertTrue(set.add(i));
+            }
+            final PrimitiveIterator.OfLong iterator = set.iterator();
+            for (long i = 0; i < 1000; i++) {
+                Assert.assertEquals(i, iterator.nextLong());
+            }
+            Assert.assertFalse(iterator.hasNext());
+        }
+    }
+
+    /*
+    A few removals do not reach the retirement threshold, their nodes are recycled by later operations
+     */
+    @Test
+    public void testRecyclingAfterFewRemovals() {
+        try (OffHeapLongSet set = new OffHeapLongSet()) {
+            for (long i = 0; i < 10; i++) {
+                Assert.assertTrue(set.add(i));
+            }
+            final long allocated = set.allocatedNodes();
+            for (long i = 0; i < 10; i++) {
+                Assert.assertTrue(set.remove(i));
+            }
+            for (int i = 0; i < 256; i++) {
+                Assert.assertFalse(set.contains(i));
+            }
+            for (long i = 10; i < 20; i++) {
+                Assert.assertTrue(set.add(i));
+            }
+            Assert.assertEquals(allocated, set.allocatedNodes());
+        }
+    }
+
+    @Test
+    public void compareWithDefaultSet() {
+        try (OffHeapLongSet mySet = new OffHeapLongSet()) {
+            java.util.Set<Long> originalSet = new TreeSet<>();
+
+            Random rand = new Random(0);
+            for (int count = 0; count < 1000; count++) {
+                for (long i = -256; i < 256; i++) {
+                    switch (rand.nextInt() % 5) {
+                        case 0:
+                            Assert.assertEquals(originalSet.add(i), mySet.add(i));
+                            break;
+                        case 1:
+                            Assert.assertEquals(originalSet.remove(i), mySet.remove(i));
+                            break;
+                        case 2:
+                            Assert.assertEquals(originalSet.contains(i), mySet.contains(i));
+                            break;
+                        case 3:
+                            final Iterator<Long> originalIterator = originalSet.iterator();
+                            final PrimitiveIterator.OfLong myIterator = mySet.iterator();
+                            while (originalIterator.hasNext() && myIterator.hasNext()) {
+                                Assert.assertEquals(originalIterator.next().longValue(), myIterator.nextLong());
+                            }
+                            Assert.assertEquals(originalIterator.hasNext(), myIterator.hasNext());
+                            break;
+                        case 4:
+                            Assert.assertEquals(originalSet.isEmpty(), mySet.isEmpty());
+                            break;
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStream() {
+        try (OffHeapLongSet set = new OffHeapLongSet()) {
+            for (long i = 0; i < 1000; i++) {
+                set.add(i);
+            }
+            Assert.assertEquals(1000, set.size());
+            Assert.assertEquals(499500L, set.longStream().sum());
+            Assert.assertEquals(1000, set.spliterator().getExactSizeIfKnown());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() {
+        final OffHeapLongSet set = new OffHeapLongSet();
+        set.add(1L);
+        set.close();
+        set.close();
+        set.contains(1L);
+    }
+}
@@ -0,0 +1,65 @@
+package ifmo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SegmentedCollectionSingleThreadTest {
+    private Collection<Integer> getInstance() {
+        return new SegmentedCollection<>();
+    }
+
+    @Test
+    public void testAdd() {
+        Collection<Integer> list = getInstance();
+
+        Assert.assertTrue(list.add(-12));
+        Assert.assertTrue(list.add(-2));
+        Assert.assertTrue(list.add(4));
+        Assert.assertTrue(list.add(12));
+
+        Assert.assertFalse(list.isBlocked());
+        list.blockFurtherAdd();
+        Assert.assertTrue(list.isBlocked());
+
+        Assert.assertEquals(Arrays.asList(-12, -2, 4, 12), list.content());
+    }
+
+    @Test
+    public void testEmpty() {
+        Collection<Integer> list = getInstance();
+        list.blockFurtherAdd();
+
+        Assert.assertFalse(list.add(-12));
+        Assert.assertFalse(list.add(-2));
+
+        Assert.assertEquals(Collections.emptyList(), list.content());
+    }
+
+    @Test
+    public void testManySegments() {
+        Collection<Integer> list = getInstance();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertTrue(list.add(i));
+            expected.add(i);
+        }
+        list.blockFurtherAdd();
+        list.blockFurtherAdd();
+
+        Assert.assertFalse(list.add(10000));
+        Assert.assertEquals(expected, list.content());
+        Assert.assertEquals(expected, list.content());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testContentNotBlocked() {
+        Collection<Integer> list = getInstance();
+        list.add(1);
+        list.content();
+    }
+}
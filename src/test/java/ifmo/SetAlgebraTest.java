@@ -0,0 +1,70 @@
+package ifmo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class SetAlgebraTest {
+
+    @Test
+    public void testOperations() {
+        ConcurrentSet<Integer> first = new ConcurrentSet<>();
+        first.addAll(Arrays.asList(1, 3, 5, 7, 9));
+        Set<Integer> second = new UnrolledConcurrentSet<>();
+        second.addAll(Arrays.asList(3, 4, 5, 10));
+
+        Assert.assertEquals(Arrays.asList(1, 3, 4, 5, 7, 9, 10), toList(SetAlgebra.union(first, second)));
+        Assert.assertEquals(Arrays.asList(3, 5), toList(SetAlgebra.intersection(first, second)));
+        Assert.assertEquals(Arrays.asList(1, 7, 9), toList(SetAlgebra.difference(first, second)));
+        Assert.assertEquals(Arrays.asList(4, 10), toList(SetAlgebra.difference(second, first)));
+
+        ConcurrentSet<Integer> empty = new ConcurrentSet<>();
+        Assert.assertEquals(Arrays.asList(1, 3, 5, 7, 9), toList(SetAlgebra.union(empty, first)));
+        Assert.assertEquals(Collections.emptyList(), toList(SetAlgebra.intersection(first, empty)));
+        Assert.assertEquals(Collections.emptyList(), toList(SetAlgebra.difference(empty, first)));
+        Assert.assertEquals(Collections.emptyList(), toList(SetAlgebra.difference(first, first)));
+    }
+
+    @Test
+    public void compareWithDefaultSet() {
+        Random rand = new Random(0);
+        for (int count = 0; count < 100; count++) {
+            ConcurrentSet<Integer> first = new ConcurrentSet<>();
+            ConcurrentSet<Integer> second = new ConcurrentSet<>();
+            java.util.Set<Integer> originalFirst = new TreeSet<>();
+            java.util.Set<Integer> originalSecond = new TreeSet<>();
+            for (int i = 0; i < 200; i++) {
+                final int value = rand.nextInt(300);
+                first.add(value);
+                originalFirst.add(value);
+                final int other = rand.nextInt(300);
+                second.add(other);
+                originalSecond.add(other);
+            }
+
+            java.util.Set<Integer> expected = new TreeSet<>(originalFirst);
+            expected.addAll(originalSecond);
+            Assert.assertEquals(new ArrayList<>(expected), toList(SetAlgebra.union(first, second)));
+            expected = new TreeSet<>(originalFirst);
+            expected.retainAll(originalSecond);
+            Assert.assertEquals(new ArrayList<>(expected), toList(SetAlgebra.intersection(first, second)));
+            expected = new TreeSet<>(originalFirst);
+            expected.removeAll(originalSecond);
+            ConcurrentSet<Integer> difference = ConcurrentSet.ofSorted(SetAlgebra.difference(first, second));
+            Assert.assertEquals(new ArrayList<>(expected), toList(difference.iterator()));
+        }
+    }
+
+    private static <T> List<T> toList(Iterator<T> iterator) {
+        List<T> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,74 @@
+package ifmo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class SetConcurrentTest {
+    private static final int WRITERS = 4;
+    private static final int KEYS = 64;
+
+    /*
+    A replica built from a subscription taken while the writers run, and updated from the feed as it goes,
+    must end up equal to the set
+     */
+    @Test
+    public void testChangeFeedReplica() throws InterruptedException {
+        for (int round = 0; round < 10; round++) {
+            final ConcurrentSet<Integer> set = ConcurrentSet.withChangeFeed(1 << 20);
+            final List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < WRITERS; t++) {
+                final Random random = new Random(round * WRITERS + t);
+                writers.add(new Thread(() -> {
+                    for (int i = 0; i < 50000; i++) {
+                        final int key = random.nextInt(KEYS);
+                        switch (random.nextInt(3)) {
+                            case 0:
+                                set.add(key);
+                                break;
+                            case 1:
+                                set.remove(key);
+                                break;
+                            default:
+                                set.contains(key);
+                        }
+                    }
+                }));
+            }
+            writers.forEach(Thread::start);
+            Thread.sleep(round % 3);
+
+            final ChangeFeed.Subscription<Integer> subscription = set.subscribe();
+            final TreeSet<Integer> replica = new TreeSet<>();
+            subscription.snapshot.forEachRemaining(replica::add);
+            boolean running = true;
+            while (running) {
+                running = false;
+                for (Thread writer : writers) {
+                    running |= writer.isAlive();
+                }
+                // Changes that complete after the check are polled by the next pass, or by the last one
+                apply(subscription.changes, replica);
+            }
+
+            final List<Integer> expected = new ArrayList<>();
+            set.iterator().forEachRemaining(expected::add);
+            Assert.assertEquals(expected, new ArrayList<>(replica));
+        }
+    }
+
+    private static void apply(ChangeFeed.Cursor<Integer> changes, TreeSet<Integer> replica) {
+        ChangeFeed.Change<Integer> change;
+        while ((change = changes.poll()) != null) {
+            if (change.type == Report.ReportType.INSERTED) {
+                replica.add(change.value);
+            } else {
+                replica.remove(change.value);
+            }
+        }
+    }
+}
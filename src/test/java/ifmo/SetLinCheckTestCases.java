@@ -9,6 +9,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 
 public class SetLinCheckTestCases {
@@ -34,6 +35,13 @@ public class SetLinCheckTestCases {
         }
     }
 
+    @Test
+    public void runNavigationTest() {
+        for (int i = 0; i < 10; i++) {
+            LinChecker.check(NavigationTest.class);
+        }
+    }
+
     @StressCTest
     public static class AddRemoveContainsTest {
         private Set<Integer> set = new ConcurrentSet<>();
@@ -107,4 +115,62 @@ public class SetLinCheckTestCases {
             return snap;
         }
     }
+
+    @StressCTest
+    public static class NavigationTest {
+        private NavigableSet<Integer> set = new ConcurrentSet<>();
+
+        @Operation
+        public boolean add(@Param(gen = IntGen.class, conf = "-10:10") int key) {
+            return set.add(key);
+        }
+
+        @Operation
+        public boolean remove(@Param(gen = IntGen.class, conf = "-10:10") int key) {
+            return set.remove(key);
+        }
+
+        @Operation
+        public Integer first() {
+            try {
+                return set.first();
+            } catch (NoSuchElementException e) {
+                return null;
+            }
+        }
+
+        @Operation
+        public Integer ceiling(@Param(gen = IntGen.class, conf = "-10:10") int key) {
+            return set.ceiling(key);
+        }
+
+        @Operation
+        public Integer floor(@Param(gen = IntGen.class, conf = "-10:10") int key) {
+            return set.floor(key);
+        }
+
+        @Operation
+        public Integer higher(@Param(gen = IntGen.class, conf = "-10:10") int key) {
+            return set.higher(key);
+        }
+
+        @Operation
+        public Integer lower(@Param(gen = IntGen.class, conf = "-10:10") int key) {
+            return set.lower(key);
+        }
+
+        @Operation
+        public List<Integer> rangeSnapshot(@Param(gen = IntGen.class, conf = "-10:10") int from) {
+            List<Integer> snap = new ArrayList<>();
+            set.subSet(from, from + 5).iterator().forEachRemaining(snap::add);
+            return snap;
+        }
+
+        @Operation
+        public List<Integer> snapshot() {
+            List<Integer> snap = new ArrayList<>();
+            set.iterator().forEachRemaining(snap::add);
+            return snap;
+        }
+    }
 }
@@ -3,9 +3,19 @@ package ifmo;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
+import java.util.Spliterator;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class SetSingleThreadTest {
     private Set<Integer> getInstance() {
@@ -86,6 +96,266 @@ public class SetSingleThreadTest {
         Assert.assertFalse(iterator.hasNext());
     }
 
+    @Test
+    public void testManyKeys() {
+        Set<Integer> set = getInstance();
+
+        for (int i = 0; i < 100000; i++) {
+            Assert.assertTrue(set.add(i));
+        }
+        for (int i = 0; i < 100000; i += 2) {
+            Assert.assertTrue(set.remove(i));
+        }
+        for (int i = 0; i < 100000; i++) {
+            Assert.assertEquals(i % 2 != 0, set.contains(i));
+        }
+
+        final Iterator<Integer> iterator = set.iterator();
+        for (int i = 1; i < 100000; i += 2) {
+            Assert.assertEquals(new Integer(i), iterator.next());
+        }
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testBulkOperations() {
+        Set<Integer> set = getInstance();
+
+        Assert.assertTrue(set.addAll(Arrays.asList(-5, 0, 3, 7, 10)));
+        Assert.assertFalse(set.addAll(Arrays.asList(0, 7)));
+        Assert.assertTrue(set.containsAll(Arrays.asList(-5, 3, 10)));
+        Assert.assertFalse(set.containsAll(Arrays.asList(-5, 4, 10)));
+
+        Assert.assertTrue(set.removeAll(Arrays.asList(-5, 1, 10)));
+        Assert.assertFalse(set.removeAll(Arrays.asList(-5, 1, 10)));
+        Assert.assertTrue(set.containsAll(Arrays.asList(0, 3, 7)));
+
+        Assert.assertTrue(set.retainAll(Arrays.asList(-1, 3, 8)));
+        Assert.assertFalse(set.contains(0));
+        Assert.assertTrue(set.contains(3));
+        Assert.assertFalse(set.contains(7));
+        Assert.assertFalse(set.retainAll(Collections.singletonList(3)));
+
+        // Unsorted input is still handled by add/remove/contains
+        Assert.assertTrue(set.addAll(Arrays.asList(9, -9, 4)));
+        Assert.assertTrue(set.containsAll(Arrays.asList(9, -9, 4, 3)));
+    }
+
+    @Test
+    public void testSnapshotReports() {
+        ConcurrentSet<Integer> set = new ConcurrentSet<>();
+        for (int i = 0; i < 1000; i++) {
+            set.add(i);
+        }
+        set.iterator();
+        set.iterator();
+
+        // Nothing is modified while snapshots are taken, so no reports are needed
+        Assert.assertEquals(2, set.snapshotCount());
+        Assert.assertEquals(0, set.snapshotReportCount());
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        Assert.assertNull(new ConcurrentSet<Integer>().stats());
+
+        ConcurrentSet<Integer> set = ConcurrentSet.instrumented();
+        for (int i = 0; i < 100; i++) {
+            set.add(i);
+        }
+        set.remove(50);
+        set.contains(99);
+        set.iterator();
+
+        SetStats stats = set.stats();
+        Assert.assertEquals(102, stats.getOperations());
+        Assert.assertTrue(stats.getAverageTraversal() > 0);
+        Assert.assertEquals(0, stats.getRestarts());
+        Assert.assertEquals(1, stats.getSnapshots());
+        Assert.assertEquals(0, stats.getAverageSnapshotReports(), 0);
+
+        ObjectName name = stats.register("testStats");
+        try {
+            Assert.assertEquals(102L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Operations"));
+        } finally {
+            SetStats.unregister("testStats");
+        }
+        stats.reset();
+        Assert.assertEquals(0, stats.getOperations());
+    }
+
+    @Test
+    public void testStatsNavigation() {
+        ConcurrentSet<Integer> set = ConcurrentSet.instrumented();
+        for (int i = 0; i < 100; i++) {
+            set.add(i);
+        }
+        SetStats stats = set.stats();
+        stats.reset();
+        Assert.assertEquals(new Integer(50), set.ceiling(50));
+        Assert.assertEquals(new Integer(49), set.lower(50));
+        Assert.assertEquals(new Integer(99), set.last());
+        Assert.assertEquals(new Integer(0), set.first());
+
+        Assert.assertEquals(4, stats.getOperations());
+        Assert.assertTrue(stats.getAverageTraversal() > 0);
+    }
+
+    @Test
+    public void testContentionPolicy() {
+        ConcurrentSet<Integer> set = ConcurrentSet.instrumented(ContentionPolicy.exponential(1, 64));
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(set.add(i));
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            Assert.assertTrue(set.remove(i));
+        }
+        Assert.assertEquals(500, set.size());
+        Assert.assertEquals(0, set.stats().getRestarts());
+    }
+
+    @Test
+    public void testContentionPolicyNotCalledWithoutFailures() {
+        AtomicInteger calls = new AtomicInteger();
+        ConcurrentSet<Integer> set = new ConcurrentSet<>(attempt -> calls.incrementAndGet());
+        for (int i = 0; i < 1000; i++) {
+            set.add(i);
+            set.contains(i);
+            if (i % 2 == 0) {
+                set.remove(i);
+            }
+            if (i % 100 == 0) {
+                set.iterator();
+            }
+        }
+        Assert.assertEquals(500, set.size());
+        Assert.assertEquals(0, calls.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalContentionPolicy() {
+        ContentionPolicy.exponential(64, 16);
+    }
+
+    @Test
+    public void testChangeFeed() {
+        ConcurrentSet<Integer> set = ConcurrentSet.withChangeFeed(16);
+        set.add(1);
+        set.add(2);
+        ChangeFeed.Subscription<Integer> subscription = set.subscribe();
+        List<Integer> snapshot = new ArrayList<>();
+        subscription.snapshot.forEachRemaining(snapshot::add);
+        Assert.assertEquals(Arrays.asList(1, 2), snapshot);
+        Assert.assertNull(subscription.changes.poll());
+
+        Assert.assertTrue(set.remove(1));
+        Assert.assertFalse(set.add(2));
+        Assert.assertTrue(set.contains(2));
+        Assert.assertTrue(set.add(1));
+        ChangeFeed.Change<Integer> change = subscription.changes.poll();
+        Assert.assertEquals(Report.ReportType.DELETED, change.type);
+        Assert.assertEquals(new Integer(1), change.value);
+        change = subscription.changes.poll();
+        Assert.assertEquals(Report.ReportType.INSERTED, change.type);
+        Assert.assertEquals(new Integer(1), change.value);
+        Assert.assertNull(subscription.changes.poll());
+
+        for (int i = 0; i < 100; i++) {
+            set.add(i + 10);
+        }
+        try {
+            subscription.changes.poll();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // The cursor has fallen behind by more than the capacity
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoChangeFeed() {
+        new ConcurrentSet<Integer>().subscribe();
+    }
+
+    @Test
+    public void testOfSorted() {
+        ConcurrentSet<Integer> set = ConcurrentSet.ofSorted(IntStream.range(0, 100000).map(i -> i * 2).boxed());
+
+        for (int i = 0; i < 200000; i++) {
+            Assert.assertEquals(i % 2 == 0, set.contains(i));
+        }
+        Assert.assertTrue(set.add(1));
+        Assert.assertTrue(set.remove(0));
+        Assert.assertEquals(new Integer(1), set.first());
+        Assert.assertEquals(new Integer(199998), set.last());
+        Assert.assertTrue(ConcurrentSet.<Integer>ofSorted(Collections.<Integer>emptyIterator()).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfSortedDuplicates() {
+        ConcurrentSet.ofSorted(Arrays.asList(1, 2, 2).iterator());
+    }
+
+    @Test
+    public void testSize() {
+        Set<Integer> set = getInstance();
+        Assert.assertEquals(0, set.size());
+        Assert.assertEquals(0, set.estimatedSize());
+
+        for (int i = 0; i < 1000; i++) {
+            set.add(i);
+            set.add(i);
+        }
+        for (int i = 0; i < 1000; i += 4) {
+            set.remove(i);
+        }
+        Assert.assertEquals(750, set.size());
+        Assert.assertEquals(750, set.estimatedSize());
+
+        Assert.assertTrue(set.retainAll(Arrays.asList(1, 2, 3, 4)));
+        Assert.assertEquals(3, set.size());
+        Assert.assertEquals(3, set.estimatedSize());
+        Assert.assertEquals(1000, ConcurrentSet.ofSorted(IntStream.range(0, 1000).boxed()).estimatedSize());
+    }
+
+    @Test
+    public void testStreams() {
+        Set<Integer> set = getInstance();
+        for (int i = 0; i < 10000; i++) {
+            set.add(i * 7 % 10000);
+        }
+
+        Spliterator<Integer> spliterator = set.spliterator();
+        Assert.assertEquals(10000, spliterator.getExactSizeIfKnown());
+        Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL));
+        Assert.assertNull(spliterator.getComparator());
+        Spliterator<Integer> prefix = spliterator.trySplit();
+        Assert.assertEquals(5000, prefix.estimateSize());
+        Assert.assertEquals(5000, spliterator.estimateSize());
+
+        Assert.assertEquals(49995000L, set.parallelStream().mapToLong(Integer::longValue).sum());
+        Assert.assertEquals(IntStream.range(0, 10000).boxed().collect(Collectors.toList()),
+                set.parallelStream().collect(Collectors.toList()));
+        Assert.assertEquals(new Integer(5000), set.stream().filter(i -> i >= 5000).findFirst().get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRetainAllUnsorted() {
+        Set<Integer> set = getInstance();
+        set.addAll(Arrays.asList(1, 2, 3));
+        set.retainAll(Arrays.asList(2, 1));
+    }
+
+    @Test
+    public void testRetainAllUnsortedKeepsSet() {
+        Set<Integer> set = getInstance();
+        set.addAll(IntStream.rangeClosed(1, 10).boxed().collect(Collectors.toList()));
+        try {
+            set.retainAll(Arrays.asList(5, 3));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(10, set.size());
+        }
+    }
 
     @Test
     public void compareWithDefaultSet() {
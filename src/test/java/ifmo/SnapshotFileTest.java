@@ -0,0 +1,132 @@
+package ifmo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+public class SnapshotFileTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path path = Files.createTempFile("set", ".snapshot");
+        try {
+            ConcurrentSet<Long> set = new ConcurrentSet<>();
+            for (long i = 0; i < 100000; i += 3) {
+                set.add(i);
+            }
+            Assert.assertEquals(33334, SnapshotFile.write(set, path, KeyCodec.LONG));
+            Assert.assertEquals(4 + 8 + 33334 * 8, Files.size(path));
+
+            ConcurrentSet<Long> loaded = SnapshotFile.read(path, KeyCodec.LONG);
+            Assert.assertEquals(toList(set.iterator()), toList(loaded.iterator()));
+            Assert.assertTrue(loaded.contains(99999L));
+            Assert.assertFalse(loaded.contains(99998L));
+            Assert.assertTrue(loaded.add(99998L));
+            Assert.assertTrue(loaded.remove(0L));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testStrings() throws IOException {
+        Path path = Files.createTempFile("set", ".snapshot");
+        try {
+            ConcurrentSet<String> set = new ConcurrentSet<>();
+            Assert.assertEquals(0, SnapshotFile.write(set, path, KeyCodec.STRING));
+            Assert.assertTrue(SnapshotFile.read(path, KeyCodec.STRING).isEmpty());
+
+            set.addAll(Arrays.asList("", "a", "ключ", "b"));
+            Assert.assertEquals(4, SnapshotFile.write(set, path, KeyCodec.STRING));
+            Assert.assertEquals(Arrays.asList("", "a", "b", "ключ"),
+                    toList(SnapshotFile.read(path, KeyCodec.STRING).iterator()));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotSnapshot() throws IOException {
+        Path path = Files.createTempFile("set", ".snapshot");
+        try {
+            Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13});
+            SnapshotFile.read(path, KeyCodec.INTEGER);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        Path path = Files.createTempFile("set", ".snapshot");
+        try {
+            ConcurrentSet<Integer> set = new ConcurrentSet<>();
+            set.addAll(Arrays.asList(1, 2, 3));
+            SnapshotFile.write(set, path, KeyCodec.INTEGER);
+            byte[] bytes = Files.readAllBytes(path);
+            Files.write(path, Arrays.copyOf(bytes, bytes.length - 2));
+            SnapshotFile.read(path, KeyCodec.INTEGER);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsorted() throws IOException {
+        Path path = Files.createTempFile("set", ".snapshot");
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(24);
+            buffer.putInt(0x4C465331).putLong(3).putInt(1).putInt(3).putInt(2);
+            Files.write(path, buffer.array());
+            SnapshotFile.read(path, KeyCodec.INTEGER);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNegativeStringLength() throws IOException {
+        Path path = Files.createTempFile("set", ".snapshot");
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(16);
+            buffer.putInt(0x4C465331).putLong(1).putInt(-1);
+            Files.write(path, buffer.array());
+            SnapshotFile.read(path, KeyCodec.STRING);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /*
+    The length fits into the file but the record does not fit into the largest window
+     */
+    @Test(expected = IOException.class)
+    public void testRecordTooLarge() throws IOException {
+        Path path = Files.createTempFile("set", ".snapshot");
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.writeInt(0x4C465331);
+            file.writeLong(1);
+            file.writeInt(Integer.MAX_VALUE);
+            // Sparse tail, longer than the largest window
+            file.setLength(16 + (1L << 31));
+            SnapshotFile.read(path, KeyCodec.STRING);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static <T> List<T> toList(Iterator<T> iterator) {
+        List<T> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,30 @@
+package ifmo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+public class StripedSetSingleThreadTest extends AbstractSetSingleThreadTest {
+    @Override
+    protected Set<Integer> getInstance() {
+        return new StripedConcurrentSet<>(4);
+    }
+
+    @Test
+    public void testIteratorIsSorted() {
+        Set<Integer> set = getInstance();
+
+        for (int i = 99; i >= 0; i--) {
+            Assert.assertTrue(set.add(i * 7 % 100));
+        }
+
+        final Iterator<Integer> iterator = set.iterator();
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(new Integer(i), iterator.next());
+        }
+        Assert.assertFalse(iterator.hasNext());
+        Assert.assertEquals(100, set.size());
+        Assert.assertEquals(100, set.estimatedSize());
+    }
+}
@@ -0,0 +1,36 @@
+package ifmo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+public class UnrolledSetSingleThreadTest extends AbstractSetSingleThreadTest {
+    @Override
+    protected Set<Integer> getInstance() {
+        return new UnrolledConcurrentSet<>();
+    }
+
+    @Test
+    public void testSplitAndCompact() {
+        Set<Integer> set = getInstance();
+        for (int i = 9999; i >= 0; i--) {
+            Assert.assertTrue(set.add(i * 7 % 10000));
+        }
+        for (int i = 0; i < 10000; i++) {
+            if (i % 10 != 0) {
+                Assert.assertTrue(set.remove(i));
+            }
+        }
+        for (int i = -1; i <= 10000; i++) {
+            Assert.assertEquals(i >= 0 && i < 10000 && i % 10 == 0, set.contains(i));
+        }
+
+        final Iterator<Integer> iterator = set.iterator();
+        for (int i = 0; i < 10000; i += 10) {
+            Assert.assertEquals(new Integer(i), iterator.next());
+        }
+        Assert.assertFalse(iterator.hasNext());
+        Assert.assertEquals(1000, set.size());
+    }
+}
@@ -0,0 +1,71 @@
+package ifmo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class VersionedSetConcurrentTest {
+    private static final int KEYS = 2000;
+
+    /*
+    Even keys are removed in ascending order, so every snapshot must be a contiguous suffix of them.
+    Searches for the absent odd keys unlink the deleted nodes while snapshots are running
+     */
+    @Test
+    public void testSnapshotsAgainstRemovals() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            final VersionedConcurrentSet<Integer> set = new VersionedConcurrentSet<>();
+            for (int i = 0; i < KEYS; i++) {
+                set.add(2 * i);
+            }
+            final AtomicBoolean stop = new AtomicBoolean();
+            final AtomicReference<List<Integer>> broken = new AtomicReference<>();
+            final List<Thread> threads = new ArrayList<>();
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < KEYS; i++) {
+                    set.remove(2 * i);
+                    if (i % 16 == 0) {
+                        Thread.yield();
+                    }
+                }
+                stop.set(true);
+            }));
+            threads.add(new Thread(() -> {
+                while (!stop.get()) {
+                    set.remove(2 * ThreadLocalRandom.current().nextInt(KEYS) + 1);
+                }
+            }));
+            for (int t = 0; t < 2; t++) {
+                threads.add(new Thread(() -> {
+                    while (!stop.get()) {
+                        final List<Integer> snapshot = new ArrayList<>();
+                        set.iterator().forEachRemaining(snapshot::add);
+                        if (!isSuffix(snapshot)) {
+                            broken.compareAndSet(null, snapshot);
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            Assert.assertNull(broken.get());
+            Assert.assertTrue(set.isEmpty());
+        }
+    }
+
+    private static boolean isSuffix(List<Integer> snapshot) {
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.get(i) != 2 * (KEYS - snapshot.size() + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,40 @@
+package ifmo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+public class VersionedSetSingleThreadTest extends AbstractSetSingleThreadTest {
+    @Override
+    protected Set<Integer> getInstance() {
+        return new VersionedConcurrentSet<>();
+    }
+
+    @Test
+    public void testIteratorIsSnapshot() {
+        Set<Integer> set = getInstance();
+        for (int i = 99; i >= 0; i--) {
+            Assert.assertTrue(set.add(i * 7 % 100));
+        }
+
+        final Iterator<Integer> iterator = set.iterator();
+        for (int i = 0; i < 100; i += 2) {
+            Assert.assertTrue(set.remove(i));
+            Assert.assertTrue(set.add(i + 1000));
+        }
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(new Integer(i), iterator.next());
+        }
+        Assert.assertFalse(iterator.hasNext());
+
+        final Iterator<Integer> next = set.iterator();
+        for (int i = 1; i < 100; i += 2) {
+            Assert.assertEquals(new Integer(i), next.next());
+        }
+        for (int i = 1000; i < 1100; i += 2) {
+            Assert.assertEquals(new Integer(i), next.next());
+        }
+        Assert.assertFalse(next.hasNext());
+    }
+}